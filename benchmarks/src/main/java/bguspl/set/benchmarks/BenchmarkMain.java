@@ -0,0 +1,23 @@
+package bguspl.set.benchmarks;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Runs the benchmarks with the JMH command line, writing the results as JSON (to jmh-result.json unless -rff gives
+ * another file, e.g. -rff results/1.2.json to keep the results of a release).
+ */
+public class BenchmarkMain {
+
+    public static void main(String[] args) throws Exception {
+        List<String> jmhArgs = new ArrayList<>();
+        List<String> given = Arrays.asList(args);
+        if (!given.contains("-rf"))
+            jmhArgs.addAll(List.of("-rf", "json"));
+        if (!given.contains("-rff"))
+            jmhArgs.addAll(List.of("-rff", "jmh-result.json"));
+        jmhArgs.addAll(given);
+        org.openjdk.jmh.Main.main(jmhArgs.toArray(new String[0]));
+    }
+}
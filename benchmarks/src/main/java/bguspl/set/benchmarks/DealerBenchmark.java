@@ -0,0 +1,92 @@
+package bguspl.set.benchmarks;
+
+import bguspl.set.Config;
+import bguspl.set.Env;
+import bguspl.set.HeadlessUserInterface;
+import bguspl.set.UtilImpl;
+import bguspl.set.ex.Dealer;
+import bguspl.set.ex.Player;
+import bguspl.set.ex.Table;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The round trip of a claim (notifyDealer until the verdict) with 2, 8 and 64 players claiming at once.
+ * No claim is a legal set, so the table never changes and every claim is judged the same way.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DealerBenchmark {
+
+    private static final int PLAYERS = 64;
+
+    private Dealer dealer;
+    private Thread dealerThread;
+    private final AtomicInteger ids = new AtomicInteger();
+
+    @State(Scope.Thread)
+    public static class PlayerState {
+        int id;
+        final int[] slots = {0, 1, 2};
+
+        @Setup
+        public void setUp(DealerBenchmark benchmark) {
+            id = benchmark.ids.getAndIncrement() % PLAYERS;
+        }
+    }
+
+    @Setup
+    public void setUp() {
+        // human players only (their threads wait for key presses that never come) and no reshuffles
+        Config config = Games.config("HumanPlayers", Integer.toString(PLAYERS), "ComputerPlayers", "0",
+                "TurnTimeoutSeconds", "-1", "PointFreezeSeconds", "0", "PenaltyFreezeSeconds", "0");
+        UtilImpl util = new UtilImpl(config) {
+            @Override
+            public boolean testSet(int[] cards) {
+                return false;
+            }
+        };
+        Env env = new Env(Games.logger(), config, new HeadlessUserInterface(config), util);
+        Player[] players = new Player[config.players];
+        Table table = new Table(env);
+        dealer = new Dealer(env, table, players, 1);
+        for (int i = 0; i < players.length; i++)
+            players[i] = new Player(env, dealer, table, i, true);
+        dealerThread = new Thread(dealer, "dealer");
+        dealerThread.start();
+    }
+
+    @TearDown
+    public void tearDown() throws InterruptedException {
+        dealer.terminate();
+        dealerThread.join();
+    }
+
+    private Dealer.Verdict claim(PlayerState player) throws Exception {
+        return dealer.notifyDealer(player.id, player.slots, System.currentTimeMillis()).get();
+    }
+
+    @Benchmark
+    @Threads(2)
+    public Dealer.Verdict claim2Players(PlayerState player) throws Exception {
+        return claim(player);
+    }
+
+    @Benchmark
+    @Threads(8)
+    public Dealer.Verdict claim8Players(PlayerState player) throws Exception {
+        return claim(player);
+    }
+
+    @Benchmark
+    @Threads(64)
+    public Dealer.Verdict claim64Players(PlayerState player) throws Exception {
+        return claim(player);
+    }
+}
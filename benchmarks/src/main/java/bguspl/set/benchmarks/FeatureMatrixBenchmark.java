@@ -0,0 +1,76 @@
+package bguspl.set.benchmarks;
+
+import bguspl.set.Config;
+import bguspl.set.FeatureMatrix;
+import bguspl.set.UtilImpl;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The bulk operations of the feature matrix: validating a batch of candidate sets, and counting the sets among the
+ * cards on a table (12 cards) and in a whole deck (81 cards).
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FeatureMatrixBenchmark {
+
+    private static final int DEALS = 64; // a power of 2
+    private static final int CANDIDATES = 4096;
+
+    @Param({"12", "81"})
+    public int cards;
+
+    private UtilImpl util;
+    private FeatureMatrix matrix;
+    private int[][] deals;
+    private int[] candidates;
+    private boolean[] valid;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        Config config = Games.config();
+        util = new UtilImpl(config);
+        matrix = util.featureMatrix();
+        SplittableRandom random = new SplittableRandom(1);
+        deals = random.ints(DEALS).mapToObj(seed -> new SplittableRandom(seed).ints(0, config.deckSize)
+                .distinct().limit(cards).toArray()).toArray(int[][]::new);
+        candidates = new int[3 * CANDIDATES];
+        for (int i = 0; i < CANDIDATES; ++i) {
+            int[] deal = deals[i & (DEALS - 1)];
+            System.arraycopy(random.ints(0, cards).distinct().limit(3).map(j -> deal[j]).toArray(), 0,
+                    candidates, 3 * i, 3);
+        }
+        valid = new boolean[CANDIDATES];
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(CANDIDATES)
+    public int validateSets() {
+        return matrix.validateSets(candidates, CANDIDATES, valid);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(CANDIDATES)
+    public int testSetEach() {
+        int sets = 0;
+        int[] set = new int[3];
+        for (int i = 0; i < CANDIDATES; ++i) {
+            System.arraycopy(candidates, 3 * i, set, 0, 3);
+            if (util.testSet(set)) ++sets;
+        }
+        return sets;
+    }
+
+    @Benchmark
+    public int countSets() {
+        int[] deal = deals[next++ & (DEALS - 1)];
+        return matrix.countSets(deal, deal.length);
+    }
+}
@@ -0,0 +1,50 @@
+package bguspl.set.benchmarks;
+
+import bguspl.set.Config;
+import bguspl.set.UtilImpl;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Finding sets among the cards on a table (12 cards) and in a whole deck (81 cards).
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FindSetsBenchmark {
+
+    private static final int DEALS = 64; // a power of 2
+
+    @Param({"12", "81"})
+    public int cards;
+
+    private UtilImpl util;
+    private List<List<Integer>> deals;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        Config config = Games.config();
+        util = new UtilImpl(config);
+        SplittableRandom random = new SplittableRandom(1);
+        deals = random.ints(DEALS).mapToObj(seed -> new SplittableRandom(seed).ints(0, config.deckSize)
+                .distinct().limit(cards).boxed().collect(Collectors.toList())).collect(Collectors.toList());
+    }
+
+    @Benchmark
+    public List<int[]> findFirstSet() {
+        return util.findSets(deals.get(next++ & (DEALS - 1)), 1);
+    }
+
+    @Benchmark
+    public List<int[]> findAllSets() {
+        return util.findSets(deals.get(next++ & (DEALS - 1)), Integer.MAX_VALUE);
+    }
+}
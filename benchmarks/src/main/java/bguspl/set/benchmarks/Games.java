@@ -0,0 +1,44 @@
+package bguspl.set.benchmarks;
+
+import bguspl.set.Config;
+
+import java.util.Properties;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Shared setup of the benchmarks.
+ */
+final class Games {
+
+    private Games() {}
+
+    /**
+     * A logger that drops everything, so logging does not distort the measurements.
+     */
+    static Logger logger() {
+        Logger logger = Logger.getAnonymousLogger();
+        logger.setUseParentHandlers(false);
+        logger.setLevel(Level.OFF);
+        return logger;
+    }
+
+    /**
+     * @param properties - the settings that differ from the defaults, as key-value pairs.
+     * @return           - the configuration of a standard game (3x4 table, 81 cards) with no table delays.
+     */
+    static Config config(String... properties) {
+        Properties p = new Properties();
+        p.setProperty("FeatureSize", "3");
+        p.setProperty("FeatureCount", "4");
+        p.setProperty("Rows", "3");
+        p.setProperty("Columns", "4");
+        p.setProperty("TableDelaySeconds", "0");
+        p.setProperty("Hints", "False");
+        p.setProperty("Headless", "True");
+        p.setProperty("EventLogLevel", "OFF");
+        for (int i = 0; i + 1 < properties.length; i += 2)
+            p.setProperty(properties[i], properties[i + 1]);
+        return new Config(logger(), p);
+    }
+}
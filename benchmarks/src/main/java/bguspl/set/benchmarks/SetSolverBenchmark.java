@@ -0,0 +1,60 @@
+package bguspl.set.benchmarks;
+
+import bguspl.set.Config;
+import bguspl.set.SetSolver;
+import bguspl.set.UtilImpl;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Counting the sets among 12, 15 and 18 cards of the deck, one subset at a time and in a parallel batch.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SetSolverBenchmark {
+
+    private static final int SUBSETS = 1 << 16; // a power of 2
+
+    @Param({"12", "15", "18"})
+    public int cards;
+
+    private SetSolver solver;
+    private long[][] masks;
+    private int[] counts;
+    private final int[] set = new int[3];
+    private int next;
+
+    @Setup
+    public void setUp() {
+        Config config = Games.config();
+        SplittableRandom random = new SplittableRandom(1);
+        solver = new SetSolver(config, new UtilImpl(config));
+        masks = new long[SUBSETS][];
+        for (int i = 0; i < SUBSETS; ++i)
+            masks[i] = solver.mask(random.ints(0, config.deckSize).distinct().limit(cards).toArray());
+        counts = new int[SUBSETS];
+    }
+
+    @Benchmark
+    public int countSets() {
+        return solver.countSets(masks[next++ & (SUBSETS - 1)]);
+    }
+
+    @Benchmark
+    public boolean firstSet() {
+        return solver.firstSet(masks[next++ & (SUBSETS - 1)], set);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SUBSETS)
+    public int[] countSetsInParallel() {
+        solver.countSets(masks, counts);
+        return counts;
+    }
+}
@@ -0,0 +1,53 @@
+package bguspl.set.benchmarks;
+
+import bguspl.set.Config;
+import bguspl.set.Env;
+import bguspl.set.HeadlessUserInterface;
+import bguspl.set.UtilImpl;
+import bguspl.set.ex.Table;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Placing and removing cards (with no table delay), including the upkeep of the table's set index.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TableBenchmark {
+
+    private Config config;
+    private Table table;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        config = Games.config();
+        table = new Table(new Env(Games.logger(), config, new HeadlessUserInterface(config), new UtilImpl(config)));
+        for (int slot = 0; slot < config.tableSize; slot++)
+            table.placeCard(slot, slot);
+        next = config.tableSize;
+    }
+
+    /**
+     * Places a card on a full table, replacing the card in its slot. The deck is larger than the table, so by the time
+     * a card comes around again it was already replaced.
+     */
+    @Benchmark
+    public void placeCard() {
+        table.placeCard(next % config.deckSize, next % config.tableSize);
+        next++;
+    }
+
+    @Benchmark
+    public void removeAndPlaceCard() {
+        int slot = next % config.tableSize;
+        table.removeCard(slot);
+        table.placeCard(next % config.deckSize, slot);
+        next++;
+    }
+}
@@ -0,0 +1,47 @@
+package bguspl.set.benchmarks;
+
+import bguspl.set.Config;
+import bguspl.set.UtilImpl;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Checking and decoding single triples of cards.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class UtilBenchmark {
+
+    private static final int TRIPLES = 1024; // a power of 2
+
+    private UtilImpl util;
+    private int[][] triples;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        Config config = Games.config();
+        util = new UtilImpl(config);
+        // random triples of different cards (about 1 in 79 is a legal set), cycled through so branches are not learned
+        SplittableRandom random = new SplittableRandom(1);
+        triples = new int[TRIPLES][];
+        for (int i = 0; i < TRIPLES; i++)
+            triples[i] = random.ints(0, config.deckSize).distinct().limit(3).toArray();
+    }
+
+    @Benchmark
+    public boolean testSet() {
+        return util.testSet(triples[next++ & (TRIPLES - 1)]);
+    }
+
+    @Benchmark
+    public int[][] cardsToFeatures() {
+        return util.cardsToFeatures(triples[next++ & (TRIPLES - 1)]);
+    }
+}
@@ -0,0 +1,211 @@
+package bguspl.set;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.ErrorManager;
+import java.util.logging.Formatter;
+import java.util.logging.Handler;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+
+/**
+ * A log handler that does not make the logging threads wait for the disk.
+ * Records are handed to a background thread through a lock-free queue; the background thread formats them and
+ * appends them to the log file through a memory mapped window. When the file reaches its size limit, logging rolls
+ * over to a new file (name.1.log, name.2.log etc.).
+ * If more than queueCapacity records are waiting, new records are dropped, and the number of dropped records is
+ * written to the log once the writer catches up.
+ */
+public class AsyncLogHandler extends Handler {
+
+    /**
+     * The size (in bytes) of the part of the file mapped at a time.
+     */
+    private static final int WINDOW_BYTES = 1 << 20;
+
+    private final Path file;
+    private final long maxFileBytes;
+    private final int queueCapacity;
+
+    private final Queue<LogRecord> queue = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger queued = new AtomicInteger();
+    private final AtomicLong dropped = new AtomicLong();
+
+    /**
+     * The number of records handed to the writer and the number it has written (used by flush).
+     */
+    private final AtomicLong published = new AtomicLong();
+    private volatile long written;
+
+    private final Thread writer;
+    private volatile boolean closed;
+
+    /**
+     * The file being written, the mapped window and the position of the window in the file (used by the writer only).
+     */
+    private FileChannel channel;
+    private MappedByteBuffer window;
+    private long windowStart;
+    private int rolls;
+
+    /**
+     * @param file          - the log file.
+     * @param formatter     - formats the records (called by the writer thread only).
+     * @param maxFileBytes  - the size at which logging rolls over to a new file.
+     * @param queueCapacity - the number of records that may wait for the writer before new ones are dropped.
+     */
+    public AsyncLogHandler(Path file, Formatter formatter, long maxFileBytes, int queueCapacity) throws IOException {
+        this.file = file;
+        this.maxFileBytes = Math.max(maxFileBytes, WINDOW_BYTES);
+        this.queueCapacity = queueCapacity;
+        setFormatter(formatter);
+        open(file);
+
+        writer = new Thread(this::writeLoop, "log-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    @Override
+    public void publish(LogRecord record) {
+        if (closed || !isLoggable(record)) return;
+        if (queued.incrementAndGet() > queueCapacity) {
+            queued.decrementAndGet();
+            dropped.incrementAndGet();
+            return;
+        }
+        queue.add(record);
+        published.incrementAndGet();
+    }
+
+    /**
+     * @return - the number of records dropped because the writer fell behind.
+     */
+    public long dropped() {
+        return dropped.get();
+    }
+
+    /**
+     * Waits until every record published so far is written to the file.
+     */
+    @Override
+    public void flush() {
+        long target = published.get();
+        while (written < target && writer.isAlive())
+            LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(1));
+    }
+
+    /**
+     * Writes all the waiting records, trims the file to its content and closes it.
+     */
+    @Override
+    public void close() {
+        if (closed) return;
+        closed = true;
+        LockSupport.unpark(writer);
+        try {
+            writer.join();
+        } catch (InterruptedException ignored) {}
+    }
+
+    private void writeLoop() {
+        try {
+            boolean done = false;
+            while (!done) {
+                done = closed;
+                LogRecord record;
+                boolean wrote = false;
+                while ((record = queue.poll()) != null) {
+                    queued.decrementAndGet();
+                    write(getFormatter().format(record));
+                    written++;
+                    wrote = true;
+                }
+                long lost = dropped.getAndSet(0);
+                if (lost > 0) {
+                    LogRecord report = new LogRecord(Level.WARNING, lost + " log records were dropped (the log writer fell behind).");
+                    write(getFormatter().format(report));
+                }
+                if (!wrote && !done)
+                    LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(1));
+            }
+        } catch (Exception e) {
+            reportError("cannot write the log", e, ErrorManager.WRITE_FAILURE);
+        } finally {
+            closeFile();
+        }
+    }
+
+    private void write(String line) throws IOException {
+        byte[] bytes = line.getBytes(StandardCharsets.UTF_8);
+        // roll over between lines, so no line is split between two files
+        long position = windowStart + window.position();
+        if (position > 0 && position + bytes.length > maxFileBytes)
+            roll();
+        int offset = 0;
+        while (offset < bytes.length) {
+            if (!window.hasRemaining())
+                nextWindow();
+            int length = Math.min(window.remaining(), bytes.length - offset);
+            window.put(bytes, offset, length);
+            offset += length;
+        }
+    }
+
+    /**
+     * Maps the next part of the file.
+     */
+    private void nextWindow() throws IOException {
+        windowStart += window.position();
+        window = channel.map(FileChannel.MapMode.READ_WRITE, windowStart, WINDOW_BYTES);
+    }
+
+    /**
+     * Closes the current file and continues in a new one.
+     */
+    private void roll() throws IOException {
+        closeFile();
+        String name = file.getFileName().toString();
+        int dot = name.lastIndexOf('.');
+        String rolled = dot < 0 ? name + "." + ++rolls : name.substring(0, dot) + "." + ++rolls + name.substring(dot);
+        open(file.resolveSibling(rolled));
+    }
+
+    private void open(Path path) throws IOException {
+        channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+        windowStart = 0;
+        window = channel.map(FileChannel.MapMode.READ_WRITE, 0, WINDOW_BYTES);
+    }
+
+    /**
+     * Forces the written part to the disk and cuts the unused (zero filled) rest of the mapped window off the file.
+     */
+    private void closeFile() {
+        if (channel == null) return;
+        try {
+            window.force();
+            long size = windowStart + window.position();
+            window = null;
+            try {
+                channel.truncate(size);
+            } catch (IOException ignored) {
+                // some platforms cannot truncate a mapped file, the zero padding stays then
+            }
+            channel.close();
+        } catch (IOException e) {
+            reportError("cannot close the log", e, ErrorManager.CLOSE_FAILURE);
+        }
+        channel = null;
+    }
+}
@@ -0,0 +1,206 @@
+package bguspl.set;
+
+import bguspl.set.ex.Dealer;
+import bguspl.set.ex.Player;
+import bguspl.set.ex.Table;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.SplittableRandom;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.logging.Handler;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Plays many independent headless games concurrently (across all cores) and aggregates their results, e.g. for
+ * comparing computer player strategies (ComputerStrategies in config.properties) or rule changes.
+ * Usage: BatchRunner number-of-games [seed] (the seed defaults to the configured one)
+ */
+public class BatchRunner {
+
+    /**
+     * The outcome of a single game.
+     */
+    public static class GameResult {
+        public final long millis;
+        public final String[] strategies;
+        public final int[] scores;
+        public final long[] keyPresses;
+        public final int[] winners;
+
+        GameResult(long millis, String[] strategies, int[] scores, long[] keyPresses, int[] winners) {
+            this.millis = millis;
+            this.strategies = strategies;
+            this.scores = scores;
+            this.keyPresses = keyPresses;
+            this.winners = winners;
+        }
+    }
+
+    /**
+     * The aggregated results of a batch of games.
+     */
+    public static class Summary {
+        public int games;
+        public long wallMillis;
+        public long totalGameMillis;
+        public long totalScore;
+
+        /**
+         * Per strategy: the number of players using it, their wins, their key presses and their score distribution
+         * (score -> players).
+         */
+        public final Map<String, Integer> players = new TreeMap<>();
+        public final Map<String, Integer> wins = new TreeMap<>();
+        public final Map<String, Long> keyPresses = new TreeMap<>();
+        public final Map<String, TreeMap<Integer, Integer>> scores = new TreeMap<>();
+
+        void add(GameResult result) {
+            games++;
+            totalGameMillis += result.millis;
+            for (int i = 0; i < result.scores.length; i++) {
+                String strategy = result.strategies[i];
+                totalScore += result.scores[i];
+                players.merge(strategy, 1, Integer::sum);
+                keyPresses.merge(strategy, result.keyPresses[i], Long::sum);
+                scores.computeIfAbsent(strategy, s -> new TreeMap<>()).merge(result.scores[i], 1, Integer::sum);
+            }
+            if (result.winners != null)
+                for (int winner : result.winners)
+                    wins.merge(result.strategies[winner], 1, Integer::sum);
+        }
+
+        public double gamesPerSecond() {
+            return wallMillis == 0 ? 0 : games * 1000.0 / wallMillis;
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder sb = new StringBuilder()
+                    .append(String.format("games: %d, wall time: %.2fs, games/sec: %.2f%n", games, wallMillis / 1000.0, gamesPerSecond()))
+                    .append(String.format("average game length: %.1fms, average sets collected: %.2f%n",
+                            games == 0 ? 0 : (double) totalGameMillis / games, games == 0 ? 0 : (double) totalScore / games));
+            for (String strategy : players.keySet()) {
+                double mean = scores.get(strategy).entrySet().stream()
+                        .mapToDouble(e -> e.getKey() * e.getValue()).sum() / players.get(strategy);
+                sb.append(String.format("strategy %s: players: %d, wins: %d, mean score: %.2f, mean key presses: %.1f, "
+                                + "score distribution: %s%n", strategy, players.get(strategy), wins.getOrDefault(strategy, 0),
+                        mean, (double) keyPresses.get(strategy) / players.get(strategy), scores.get(strategy)));
+            }
+            return sb.toString();
+        }
+    }
+
+    private final Logger logger;
+    private final Config config;
+
+    /**
+     * The utilities (and the set index they hold) are read-only, so all games share them.
+     */
+    private final Util util;
+
+    /**
+     * @param logger - the logger shared by all games.
+     * @param config - the configuration of every game (should be headless).
+     */
+    public BatchRunner(Logger logger, Config config) {
+        this.logger = logger;
+        this.config = config;
+        util = new UtilImpl(config);
+    }
+
+    /**
+     * Plays a single game to its end on the calling thread.
+     *
+     * @param seed - the seed of the game's random number generator.
+     * @return     - the outcome of the game.
+     */
+    public GameResult playGame(long seed) {
+        HeadlessUserInterface ui = new HeadlessUserInterface(config);
+        Env env = new Env(logger, config, ui, util);
+
+        Player[] players = new Player[config.players];
+        Table table = new Table(env);
+        Dealer dealer = new Dealer(env, table, players, seed);
+        for (int i = 0; i < players.length; i++)
+            players[i] = new Player(env, dealer, table, i, i < config.humanPlayers);
+
+        long start = System.currentTimeMillis();
+        dealer.run();
+        long millis = System.currentTimeMillis() - start;
+
+        String[] strategies = new String[players.length];
+        int[] scores = new int[players.length];
+        long[] keyPresses = new long[players.length];
+        for (int i = 0; i < players.length; i++) {
+            strategies[i] = players[i].strategyName();
+            scores[i] = players[i].getScore();
+            keyPresses[i] = players[i].keyPresses();
+        }
+        return new GameResult(millis, strategies, scores, keyPresses, ui.winners());
+    }
+
+    /**
+     * Plays a batch of games concurrently, one game per core at a time.
+     *
+     * @param games - the number of games to play.
+     * @param seed  - the seed the games' seeds are derived from.
+     * @return      - the aggregated results.
+     */
+    public Summary run(int games, long seed) throws InterruptedException {
+        SplittableRandom seeds = new SplittableRandom(seed);
+        ExecutorService executor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+        long start = System.currentTimeMillis();
+        Summary summary = new Summary();
+        try {
+            List<Future<GameResult>> results = new ArrayList<>(games);
+            for (int i = 0; i < games; i++) {
+                long gameSeed = seeds.nextLong();
+                results.add(executor.submit(() -> playGame(gameSeed)));
+            }
+            for (Future<GameResult> result : results)
+                summary.add(result.get());
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("a game failed", e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+        summary.wallMillis = System.currentTimeMillis() - start;
+        return summary;
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        if (args.length < 1) {
+            System.out.println("usage: BatchRunner number-of-games [seed]");
+            return;
+        }
+        int games = Integer.parseInt(args[0]);
+
+        Logger logger = Main.initLogger(false);
+        // the games' own messages would drown the log, only keep problems
+        logger.setLevel(Level.WARNING);
+        Properties properties = Config.loadProperties("config.properties", logger);
+        properties.setProperty("Headless", "True");
+        // nobody presses keys in a batch, so every player is a computer player (the first ComputerStrategies entries
+        // go to the players that were human)
+        int players = Integer.parseInt(properties.getProperty("HumanPlayers", "2"))
+                + Integer.parseInt(properties.getProperty("ComputerPlayers", "0"));
+        properties.setProperty("HumanPlayers", "0");
+        properties.setProperty("ComputerPlayers", Integer.toString(players));
+        Config config = new Config(logger, properties);
+        long seed = args.length > 1 ? Long.parseLong(args[1]) : config.seed;
+
+        Summary summary = new BatchRunner(logger, config).run(games, seed);
+        System.out.println("seed: " + seed);
+        System.out.print(summary);
+        for (Handler h : logger.getHandlers())
+            h.close();
+    }
+}
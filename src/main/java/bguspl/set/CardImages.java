@@ -0,0 +1,210 @@
+package bguspl.set;
+
+import javax.imageio.ImageIO;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * The card images, loaded from the resources when first needed and kept scaled to the cell size, so drawing a card
+ * is a plain copy. At most config.cardImageCacheSize images are kept, the least recently used ones are dropped.
+ * Cards that have no image in the resources (e.g. in decks larger than the standard one) are drawn from their
+ * features instead.
+ */
+public class CardImages {
+
+    private final Logger logger;
+    private final Config config;
+
+    /**
+     * The cached images of the cards, in access order (least recently used first).
+     */
+    private final Map<Integer, BufferedImage> cache;
+
+    /**
+     * The image of an empty cell.
+     */
+    private final BufferedImage emptyCard;
+
+    public CardImages(Logger logger, Config config) {
+        this.logger = logger;
+        this.config = config;
+        int capacity = Math.max(1, config.cardImageCacheSize);
+        cache = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, BufferedImage> eldest) {
+                return size() > capacity;
+            }
+        };
+        BufferedImage empty = load("cards/empty_card.png");
+        emptyCard = empty != null ? empty : draw(null);
+    }
+
+    /**
+     * @param n       - a non-negative number.
+     * @param padding - the minimal number of digits.
+     * @param base    - the base to write the number in (at most 36).
+     * @return        - the number written in the base, padded with leading zeros.
+     */
+    static String intInBaseToPaddedString(int n, int padding, int base) {
+        int digits = 1;
+        for (int rest = n / base; rest > 0; rest /= base)
+            digits++;
+        char[] chars = new char[Math.max(digits, padding)];
+        for (int i = chars.length - 1; i >= 0; i--, n /= base)
+            chars[i] = Character.forDigit(n % base, base);
+        return new String(chars);
+    }
+
+    /**
+     * @return - the image of an empty cell.
+     */
+    public Image emptyCard() {
+        return emptyCard;
+    }
+
+    /**
+     * Returns the image of a card, loading it if it is not cached.
+     *
+     * @param card - the card id.
+     * @return     - the image of the card, scaled to the cell size.
+     */
+    public Image get(int card) {
+        BufferedImage image;
+        synchronized (cache) {
+            image = cache.get(card);
+        }
+        if (image != null) return image;
+
+        // loaded outside the lock, so drawing a cached card never waits for a slow load (at worst it is loaded twice)
+        String name = intInBaseToPaddedString(card, config.featureCount, config.featureSize);
+        image = load("cards/" + name + ".png");
+        if (image == null)
+            image = draw(name);
+        synchronized (cache) {
+            BufferedImage cached = cache.putIfAbsent(card, image);
+            return cached != null ? cached : image;
+        }
+    }
+
+    /**
+     * Loads the card images on a background thread (as many as the cache holds).
+     */
+    public void prewarm() {
+        Thread thread = new Thread(() -> {
+            long start = System.currentTimeMillis();
+            int cards = Math.min(config.deckSize, config.cardImageCacheSize);
+            for (int card = 0; card < cards; card++)
+                get(card);
+            logger.log(Level.INFO, "loaded " + cards + " card images in " + (System.currentTimeMillis() - start) + "ms.");
+        }, "card-images");
+        thread.setDaemon(true);
+        thread.setPriority(Thread.MIN_PRIORITY);
+        thread.start();
+    }
+
+    /**
+     * @return - the image in the resource file, scaled to the cell size (null if there is no such file).
+     */
+    private BufferedImage load(String filename) {
+        try (InputStream in = getClass().getClassLoader().getResourceAsStream(filename)) {
+            if (in == null)
+                return null;
+            BufferedImage source = ImageIO.read(in);
+            if (source == null)
+                throw new IOException("unsupported image format: " + filename);
+            return scaled(source);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private BufferedImage newImage() {
+        return GraphicsEnvironment.isHeadless()
+                ? new BufferedImage(config.cellWidth, config.cellHeight, BufferedImage.TYPE_INT_ARGB)
+                : GraphicsEnvironment.getLocalGraphicsEnvironment().getDefaultScreenDevice().getDefaultConfiguration()
+                        .createCompatibleImage(config.cellWidth, config.cellHeight, Transparency.TRANSLUCENT);
+    }
+
+    private BufferedImage scaled(BufferedImage source) {
+        BufferedImage image = newImage();
+        Graphics2D g = image.createGraphics();
+        try {
+            g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            g.drawImage(source, 0, 0, config.cellWidth, config.cellHeight, null);
+        } finally {
+            g.dispose();
+        }
+        return image;
+    }
+
+    /**
+     * Draws a card from its features: the first feature is the number of symbols, the second their color, the third
+     * their shape (a polygon with 3, 4, 5... corners) and the fourth their shading. Any further features are written
+     * at the bottom of the card.
+     *
+     * @param digits - the card's features, one digit per feature (null for an empty cell).
+     */
+    private BufferedImage draw(String digits) {
+        BufferedImage image = newImage();
+        Graphics2D g = image.createGraphics();
+        try {
+            g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+            int width = config.cellWidth, height = config.cellHeight;
+            int margin = Math.max(2, Math.min(width, height) / 20);
+            g.setColor(digits == null ? new Color(0xE0E0E0) : Color.WHITE);
+            g.fillRoundRect(margin, margin, width - 2 * margin, height - 2 * margin, 4 * margin, 4 * margin);
+            g.setColor(Color.GRAY);
+            g.drawRoundRect(margin, margin, width - 2 * margin, height - 2 * margin, 4 * margin, 4 * margin);
+            if (digits == null) return image;
+
+            int[] features = new int[digits.length()];
+            for (int i = 0; i < features.length; i++)
+                features[i] = Character.digit(digits.charAt(i), config.featureSize);
+            int symbols = features.length > 0 ? features[0] + 1 : 1;
+            Color color = features.length > 1
+                    ? Color.getHSBColor((float) features[1] / config.featureSize, 0.85f, 0.8f) : Color.BLACK;
+            int corners = features.length > 2 ? features[2] + 3 : 3;
+            // outlined, solid, then more and more transparent fills
+            int shading = features.length > 3 ? features[3] : 1;
+
+            int size = Math.min((width - 2 * margin) / (symbols + 1), height / 3);
+            int gap = (width - symbols * size) / (symbols + 1);
+            int y = (height - size) / 2;
+            g.setStroke(new BasicStroke(Math.max(1, size / 16f)));
+            for (int i = 0; i < symbols; i++) {
+                Polygon polygon = new Polygon();
+                double cx = gap + i * (size + gap) + size / 2.0, cy = y + size / 2.0;
+                for (int c = 0; c < corners; c++) {
+                    double angle = -Math.PI / 2 + 2 * Math.PI * c / corners;
+                    polygon.addPoint((int) Math.round(cx + size / 2.0 * Math.cos(angle)),
+                            (int) Math.round(cy + size / 2.0 * Math.sin(angle)));
+                }
+                if (shading > 0) {
+                    int alpha = 255 - (shading - 1) * 200 / Math.max(1, config.featureSize - 2);
+                    g.setColor(new Color(color.getRed(), color.getGreen(), color.getBlue(), alpha));
+                    g.fillPolygon(polygon);
+                }
+                g.setColor(color);
+                g.drawPolygon(polygon);
+            }
+
+            if (features.length > 4) {
+                g.setColor(Color.DARK_GRAY);
+                g.setFont(new Font("SansSerif", Font.PLAIN, Math.max(8, height / 10)));
+                String extra = digits.substring(4);
+                int textWidth = g.getFontMetrics().stringWidth(extra);
+                g.drawString(extra, (width - textWidth) / 2, height - 2 * margin);
+            }
+        } finally {
+            g.dispose();
+        }
+        return image;
+    }
+}
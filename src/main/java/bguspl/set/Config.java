@@ -50,6 +50,11 @@ public class Config {
      */
     public final boolean hints;
 
+    /**
+     * Whether to run the game without a graphical user interface (in which case there are no table delays)
+     */
+    public final boolean headless;
+
     /**
      * The number of milliseconds until the dealer reshuffles the deck (0 show timer since last action, -1 show nothing)
      */
@@ -75,6 +80,34 @@ public class Config {
      */
     public final long tableDelayMillis;
 
+    /**
+     * The number of milliseconds a computer player waits between two simulated key presses
+     */
+    public final long computerKeyPressDelayMillis;
+
+    /**
+     * The strategy of each computer player: random, skilled:N (finds a set after about N milliseconds) or optimal
+     * Note: if there are more computer players than strategies, the remaining ones use the random strategy.
+     */
+    private final String[] computerStrategies;
+
+    /**
+     * True iff the player and computer player threads are virtual threads (ThreadModel=virtual), false for platform
+     * threads (ThreadModel=platform)
+     */
+    public final boolean virtualThreads;
+
+    /**
+     * The seed all the game's random number generators are derived from (the same seed replays the same deck shuffles
+     * and computer player choices). A new seed is drawn if none is configured.
+     */
+    public final long seed;
+
+    /**
+     * How much of the game's events to record in the binary event log (OFF, GAME or ALL)
+     */
+    public final EventLog.Level eventLogLevel;
+
     /**
      * The names of the players to display on the screen
      * Note: if there are more players than names, the remaining players will be called "Player 3", "Player 4", etc.
@@ -121,6 +154,16 @@ public class Config {
      */
     public final int fontSize;
 
+    /**
+     * The maximal number of card images kept in memory (scaled to the cell size)
+     */
+    public final int cardImageCacheSize;
+
+    /**
+     * Whether to load the card images in the background when the game starts (instead of when first placed)
+     */
+    public final boolean prewarmCardImages;
+
     /**
      * The scancodes of the keyboard input data for each player
      * Notes:
@@ -144,7 +187,7 @@ public class Config {
      * @param filename - the name of the configuration file.
      * @return - a properties object with the configuration file contents.
      */
-    private static Properties loadProperties(String filename, Logger logger) {
+    public static Properties loadProperties(String filename, Logger logger) {
 
         Properties properties = new Properties();
 
@@ -180,11 +223,22 @@ public class Config {
         players = humanPlayers + computerPlayers;
 
         hints = Boolean.parseBoolean(properties.getProperty("Hints", "False"));
+        headless = Boolean.parseBoolean(properties.getProperty("Headless", "False"));
+        if (headless && humanPlayers > 0)
+            logger.log(Level.WARNING, "running headless: the " + humanPlayers + " human players will not be able to play.");
         turnTimeoutMillis = (long) (Double.parseDouble(properties.getProperty("TurnTimeoutSeconds", "60")) * 1000.0);
         turnTimeoutWarningMillis = (long) (Double.parseDouble(properties.getProperty("TurnTimeoutWarningSeconds", "60")) * 1000.0);
         pointFreezeMillis = (long) (Double.parseDouble(properties.getProperty("PointFreezeSeconds", "1")) * 1000.0);
         penaltyFreezeMillis = (long) (Double.parseDouble(properties.getProperty("PenaltyFreezeSeconds", "3")) * 1000.0);
-        tableDelayMillis = (long) (Double.parseDouble(properties.getProperty("TableDelaySeconds", "0.1")) * 1000.0);
+        tableDelayMillis = headless ? 0 : (long) (Double.parseDouble(properties.getProperty("TableDelaySeconds", "0.1")) * 1000.0);
+        computerKeyPressDelayMillis = (long) (Double.parseDouble(properties.getProperty("ComputerKeyPressDelaySeconds", "0.01")) * 1000.0);
+        computerStrategies = properties.getProperty("ComputerStrategies", "random").split(",");
+        for (int i = 0; i < computerStrategies.length; i++)
+            computerStrategies[i] = computerStrategies[i].trim();
+        virtualThreads = properties.getProperty("ThreadModel", "platform").trim().equalsIgnoreCase("virtual");
+        String seedString = properties.getProperty("Seed", "").trim();
+        seed = seedString.isEmpty() ? System.nanoTime() : Long.parseLong(seedString);
+        eventLogLevel = EventLog.Level.valueOf(properties.getProperty("EventLogLevel", "GAME").trim().toUpperCase());
 
         // ui data
         String[] names = properties.getProperty("PlayerNames", "Player 1, Player 2").split(",");
@@ -199,6 +253,8 @@ public class Config {
         PlayerCellWidth = Integer.parseInt(properties.getProperty("PlayerCellWidth", "300"));
         PlayerCellHeight = Integer.parseInt(properties.getProperty("PlayerCellHeight", "40"));
         fontSize = Integer.parseInt(properties.getProperty("FontSize", "40"));
+        cardImageCacheSize = Integer.parseInt(properties.getProperty("CardImageCacheSize", "128"));
+        prewarmCardImages = Boolean.parseBoolean(properties.getProperty("PrewarmCardImages", "False"));
 
         // keyboard input data
         playerKeys = new int[players][rows * columns];
@@ -219,4 +275,13 @@ public class Config {
     public int[] playerKeys(int player) {
         return playerKeys[player];
     }
+
+    /**
+     * @param computerPlayer - the index of a computer player among the computer players (starting from 0).
+     * @return               - the configured strategy of the computer player.
+     */
+    public String computerStrategy(int computerPlayer) {
+        return computerPlayer >= 0 && computerPlayer < computerStrategies.length
+                ? computerStrategies[computerPlayer] : "random";
+    }
 }
@@ -8,11 +8,17 @@ public class Env {
     public final Config config;
     public final UserInterface ui;
     public final Util util;
+    public final EventLog events;
 
-    public Env(Logger logger, Config config, UserInterface ui, Util util) {
+    public Env(Logger logger, Config config, UserInterface ui, Util util, EventLog events) {
         this.logger = logger;
         this.config = config;
         this.ui = ui;
         this.util = util;
+        this.events = events;
+    }
+
+    public Env(Logger logger, Config config, UserInterface ui, Util util) {
+        this(logger, config, ui, util, EventLog.disabled());
     }
 }
@@ -0,0 +1,315 @@
+package bguspl.set;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.Logger;
+
+/**
+ * A low overhead recorder of game events (cards, tokens, key presses, points etc.).
+ * The game threads write fixed size binary records into a preallocated ring buffer without locking or allocating,
+ * and a background thread appends them to a file. Records are only turned into text when read back (see main), so
+ * recording an event costs a few memory writes.
+ * If the writer falls behind by a whole buffer, new events are dropped (and counted) instead of blocking the game.
+ */
+public class EventLog implements AutoCloseable {
+
+    /**
+     * How much is recorded.
+     */
+    public enum Level {
+        /**
+         * Nothing.
+         */
+        OFF,
+        /**
+         * Cards placed and removed, points, penalties and reshuffles.
+         */
+        GAME,
+        /**
+         * Also every key press and token.
+         */
+        ALL
+    }
+
+    /**
+     * The kinds of events.
+     */
+    public enum Type {
+        CARD_PLACED(Level.GAME),
+        CARD_REMOVED(Level.GAME),
+        POINT(Level.GAME),
+        PENALTY(Level.GAME),
+        RESHUFFLE(Level.GAME),
+        KEY_PRESSED(Level.ALL),
+        TOKEN_PLACED(Level.ALL),
+        TOKEN_REMOVED(Level.ALL);
+
+        private final Level level;
+
+        Type(Level level) {
+            this.level = level;
+        }
+
+        private static final Type[] types = values();
+    }
+
+    /**
+     * The size (in bytes) of a record in the file: the time (nanoseconds since the log was opened) and the packed
+     * event (see pack).
+     */
+    public static final int RECORD_BYTES = 2 * Long.BYTES;
+
+    /**
+     * The first bytes of an event log file.
+     */
+    private static final long MAGIC = 0x5345545f45564e54L; // "SET_EVNT"
+
+    /**
+     * The number of records written to the file at once (at most).
+     */
+    private static final int BATCH_RECORDS = 1024;
+
+    /**
+     * An event log that records nothing.
+     */
+    private static final EventLog DISABLED = new EventLog();
+
+    private final Level level;
+    private final Logger logger;
+
+    /**
+     * The ring buffer: two words per record.
+     */
+    private final long[] records;
+
+    /**
+     * The sequence number of the record written to each entry of the ring buffer (set after the record).
+     */
+    private final AtomicLongArray published;
+
+    /**
+     * The capacity of the ring buffer (in records), a power of 2.
+     */
+    private final int capacity;
+
+    /**
+     * The sequence number of the next record to claim.
+     */
+    private final AtomicLong next = new AtomicLong();
+
+    /**
+     * The sequence number of the next record to write to the file (all earlier entries may be reused).
+     */
+    private final AtomicLong consumed = new AtomicLong();
+
+    /**
+     * The number of events dropped because the buffer was full.
+     */
+    private final AtomicLong dropped = new AtomicLong();
+
+    private final long startNanos;
+    private final FileChannel channel;
+    private final Thread writer;
+    private volatile boolean closed;
+
+    private EventLog() {
+        level = Level.OFF;
+        logger = null;
+        records = null;
+        published = null;
+        capacity = 0;
+        startNanos = 0;
+        channel = null;
+        writer = null;
+    }
+
+    /**
+     * Creates an event log that appends to a file.
+     *
+     * @param logger   - the logger to report problems and drops to.
+     * @param level    - how much to record.
+     * @param file     - the file to write the records to.
+     * @param capacity - the capacity of the ring buffer (in records, rounded up to a power of 2).
+     */
+    public EventLog(Logger logger, Level level, Path file, int capacity) throws IOException {
+        this.logger = logger;
+        this.level = level;
+        this.capacity = Integer.highestOneBit(Math.max(2, capacity) * 2 - 1);
+        records = new long[2 * this.capacity];
+        published = new AtomicLongArray(this.capacity);
+        for (int i = 0; i < this.capacity; i++)
+            published.set(i, -1);
+
+        channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+        startNanos = System.nanoTime();
+        ByteBuffer header = ByteBuffer.allocate(2 * Long.BYTES).putLong(MAGIC).putLong(System.currentTimeMillis());
+        header.flip();
+        while (header.hasRemaining())
+            channel.write(header);
+
+        writer = new Thread(this::writeLoop, "event-log");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /**
+     * @return - an event log that records nothing.
+     */
+    public static EventLog disabled() {
+        return DISABLED;
+    }
+
+    /**
+     * @return - true iff events of the type are recorded.
+     */
+    public boolean records(Type type) {
+        return type.level.ordinal() <= level.ordinal();
+    }
+
+    /**
+     * Records an event (unless its type is not recorded at the configured level or the buffer is full).
+     *
+     * @param type   - the kind of event.
+     * @param player - the player involved (-1 if none).
+     * @param slot   - the slot involved (-1 if none).
+     * @param card   - the card involved (-1 if none).
+     */
+    public void record(Type type, int player, int slot, int card) {
+        if (!records(type) || closed) return;
+
+        long sequence;
+        do {
+            sequence = next.get();
+            if (sequence - consumed.get() >= capacity) {
+                dropped.incrementAndGet();
+                return;
+            }
+        } while (!next.compareAndSet(sequence, sequence + 1));
+
+        int index = (int) sequence & (capacity - 1);
+        records[2 * index] = System.nanoTime() - startNanos;
+        records[2 * index + 1] = pack(type, player, slot, card);
+        // publishing (a volatile write) makes the record words visible to the writer thread
+        published.set(index, sequence);
+    }
+
+    /**
+     * @return - the number of events dropped because the writer fell behind.
+     */
+    public long dropped() {
+        return dropped.get();
+    }
+
+    /**
+     * Writes all the recorded events to the file and closes it.
+     */
+    @Override
+    public void close() {
+        if (writer == null || closed) return;
+        closed = true;
+        LockSupport.unpark(writer);
+        try {
+            writer.join();
+        } catch (InterruptedException ignored) {}
+        if (dropped.get() > 0)
+            logger.log(java.util.logging.Level.WARNING, "event log dropped " + dropped.get() + " events.");
+    }
+
+    private void writeLoop() {
+        ByteBuffer buffer = ByteBuffer.allocateDirect(BATCH_RECORDS * RECORD_BYTES);
+        try {
+            boolean done = false;
+            while (!done) {
+                // read closed before draining, so events recorded before close are always written
+                done = closed;
+                long sequence = consumed.get();
+                int index = (int) sequence & (capacity - 1);
+                while (published.get(index) == sequence && buffer.remaining() >= RECORD_BYTES) {
+                    buffer.putLong(records[2 * index]).putLong(records[2 * index + 1]);
+                    index = (int) ++sequence & (capacity - 1);
+                }
+                if (buffer.position() > 0) {
+                    consumed.set(sequence);
+                    buffer.flip();
+                    while (buffer.hasRemaining())
+                        channel.write(buffer);
+                    buffer.clear();
+                    done = false; // there may be more
+                } else if (!done) {
+                    LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(1));
+                }
+            }
+        } catch (IOException e) {
+            logger.log(java.util.logging.Level.WARNING, "cannot write the event log: " + e);
+        } finally {
+            try {
+                channel.close();
+            } catch (IOException ignored) {}
+        }
+    }
+
+    /**
+     * Packs an event into a single word: the type (8 bits), the player (16 bits), the slot (16 bits) and the card
+     * (24 bits), each id stored plus 1 so -1 becomes 0.
+     */
+    static long pack(Type type, int player, int slot, int card) {
+        return (long) type.ordinal() << 56 | (long) ((player + 1) & 0xFFFF) << 40
+                | (long) ((slot + 1) & 0xFFFF) << 24 | ((card + 1) & 0xFFFFFF);
+    }
+
+    /**
+     * Formats a packed event as text.
+     *
+     * @param nanos - the time of the event (nanoseconds since the log was opened).
+     * @param event - the packed event.
+     * @return      - a human readable description of the event.
+     */
+    static String format(long nanos, long event) {
+        StringBuilder sb = new StringBuilder(String.format("[%d.%03dms] ", nanos / 1_000_000, nanos / 1000 % 1000))
+                .append(Type.types[(int) (event >>> 56)]);
+        appendField(sb, " player ", (int) (event >>> 40 & 0xFFFF));
+        appendField(sb, " slot ", (int) (event >>> 24 & 0xFFFF));
+        appendField(sb, " card ", (int) (event & 0xFFFFFF));
+        return sb.toString();
+    }
+
+    private static void appendField(StringBuilder sb, String name, int idPlusOne) {
+        if (idPlusOne != 0)
+            sb.append(name).append(idPlusOne - 1);
+    }
+
+    /**
+     * Prints the events in an event log file as text.
+     *
+     * @param file - the event log file.
+     * @param out  - where to print the events.
+     */
+    public static void print(Path file, PrintStream out) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(file));
+        if (buffer.remaining() < 2 * Long.BYTES || buffer.getLong() != MAGIC)
+            throw new IOException(file + " is not an event log");
+        out.println("# started at " + new java.util.Date(buffer.getLong()));
+        while (buffer.remaining() >= RECORD_BYTES)
+            out.println(format(buffer.getLong(), buffer.getLong()));
+    }
+
+    /**
+     * Prints event log files as text.
+     * Usage: EventLog file...
+     */
+    public static void main(String[] args) throws IOException {
+        for (String file : args)
+            print(Paths.get(file), System.out);
+    }
+}
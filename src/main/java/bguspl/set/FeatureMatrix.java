@@ -0,0 +1,263 @@
+package bguspl.set;
+
+import java.util.Arrays;
+
+/**
+ * The features of all the cards in the deck, stored feature by feature (one byte array per feature, indexed by card
+ * id), with bulk operations for analysing many cards or candidate sets at once.
+ * The bulk operations work in blocks and keep their inner loops free of branches and calls, going over plain arrays
+ * one feature at a time, so the JIT compiler can unroll and vectorize them.
+ * The operations are thread safe (each thread uses its own scratch arrays).
+ */
+public class FeatureMatrix {
+
+    /**
+     * The number of candidate sets validated together (the scratch arrays stay in the L1 cache).
+     */
+    private static final int BLOCK = 256;
+
+    private final int featureCount;
+    private final int featureSize;
+    private final int deckSize;
+
+    /**
+     * The features: features[feature][card] is the value of the feature of the card.
+     */
+    private final byte[][] features;
+
+    /**
+     * The features of each card packed one per byte (feature i in byte i), so a single long addition adds up all the
+     * features of two cards. Null if there are more than 8 features.
+     */
+    private final long[] lanes;
+
+    /**
+     * The lowest bit of every byte used by a feature in lanes.
+     */
+    private final long laneLows;
+
+    /**
+     * The contribution of each feature to a card id (featureSize ^ (featureCount - 1 - feature)).
+     */
+    private final int[] weights;
+
+    private final ThreadLocal<Scratch> scratch;
+
+    /**
+     * The per-thread scratch arrays of the bulk operations.
+     */
+    private final class Scratch {
+        final int[] sums = new int[BLOCK];
+        final int[] bad = new int[BLOCK];
+
+        /**
+         * The position of each card in the subset passed to countSets (-1 for cards not in it).
+         */
+        final int[] positions = new int[deckSize];
+
+        /**
+         * The features of the subset passed to countSets, copied next to each other (grown as needed).
+         */
+        byte[][] rows = new byte[featureCount][0];
+        int[] thirds = new int[0];
+
+        /**
+         * The values in use by the cards chosen by countSets when a set is not made of 3 cards: a bit mask per
+         * feature, a row of featureCount masks per number of chosen cards.
+         */
+        final int[] masks = new int[(featureSize + 1) * featureCount];
+
+        Scratch() {
+            Arrays.fill(positions, -1);
+        }
+
+        void ensureCapacity(int cards) {
+            if (thirds.length >= cards) return;
+            rows = new byte[featureCount][cards];
+            thirds = new int[cards];
+        }
+    }
+
+    /**
+     * @param config - the game configuration (featureSize must be less than 32, so the values of a feature fit in the
+     *                 bits of an int).
+     */
+    public FeatureMatrix(Config config) {
+        if (config.featureSize >= Integer.SIZE)
+            throw new IllegalArgumentException("feature size " + config.featureSize + " is too large");
+        featureCount = config.featureCount;
+        featureSize = config.featureSize;
+        deckSize = config.deckSize;
+
+        features = new byte[featureCount][deckSize];
+        weights = new int[featureCount];
+        for (int feature = featureCount - 1, weight = 1; feature >= 0; --feature, weight *= featureSize) {
+            weights[feature] = weight;
+            byte[] column = features[feature];
+            for (int card = 0; card < deckSize; ++card)
+                column[card] = (byte) (card / weight % featureSize);
+        }
+
+        boolean packable = featureCount <= Long.BYTES;
+        lanes = packable ? new long[deckSize] : null;
+        long lows = 0;
+        for (int feature = 0; packable && feature < featureCount; ++feature) {
+            lows |= 1L << (Byte.SIZE * feature);
+            byte[] column = features[feature];
+            for (int card = 0; card < deckSize; ++card)
+                lanes[card] |= (long) column[card] << (Byte.SIZE * feature);
+        }
+        laneLows = lows;
+        scratch = ThreadLocal.withInitial(Scratch::new);
+    }
+
+    /**
+     * @param card    - a card id.
+     * @param feature - a feature index (between 0 and featureCount - 1).
+     * @return        - the value of the feature of the card.
+     */
+    public int feature(int card, int feature) {
+        return features[feature][card];
+    }
+
+    /**
+     * Checks many candidate sets at once.
+     *
+     * @param candidates - the cards of the candidates, featureSize consecutive card ids per candidate.
+     * @param count      - the number of candidates.
+     * @param valid      - set to whether each candidate is a legal set (at least count entries).
+     * @return           - the number of legal sets among the candidates.
+     */
+    public int validateSets(int[] candidates, int count, boolean[] valid) {
+        if (featureSize == 3 && lanes != null)
+            return validateTriples(candidates, count, valid);
+
+        Scratch scratch = this.scratch.get();
+        int[] sums = scratch.sums, bad = scratch.bad;
+        int sets = 0;
+        for (int start = 0; start < count; start += BLOCK) {
+            int length = Math.min(BLOCK, count - start);
+            Arrays.fill(bad, 0, length, 0);
+            for (byte[] column : features) {
+                // the values in use as a bit mask: a single bit (all the same) or all the bits (all different)
+                for (int i = 0, c = featureSize * start; i < length; ++i) {
+                    int used = 0;
+                    for (int j = 0; j < featureSize; ++j, ++c)
+                        used |= 1 << column[candidates[c]];
+                    sums[i] = used;
+                }
+                int all = (1 << featureSize) - 1;
+                for (int i = 0; i < length; ++i) {
+                    int used = sums[i];
+                    // both terms are 1 iff positive: more than one value in use, and not all of them
+                    bad[i] |= (-(used & (used - 1)) >>> 31) & (-(used ^ all) >>> 31);
+                }
+            }
+            for (int i = 0; i < length; ++i) {
+                valid[start + i] = bad[i] == 0;
+                sets += (bad[i] - 1) >>> 31;
+            }
+        }
+        return sets;
+    }
+
+    /**
+     * Checks candidate triples, all the features of a triple at once: a feature is all the same or all different iff
+     * its 3 values add up to a multiple of 3, so the features are added up in their bytes and every byte is reduced
+     * mod 3 without a division, as s - 3 * ((s * 11) >> 5) (exact for s in 0..6, and no byte overflows into the next).
+     */
+    private int validateTriples(int[] candidates, int count, boolean[] valid) {
+        long low3Bits = laneLows * 0x07;
+        int sets = 0;
+        for (int i = 0, c = 0; i < count; ++i, c += 3) {
+            long sums = lanes[candidates[c]] + lanes[candidates[c + 1]] + lanes[candidates[c + 2]];
+            long remainders = sums - 3 * (((sums * 11) >>> 5) & low3Bits);
+            valid[i] = remainders == 0;
+            sets += (int) ((remainders - 1) >>> 63);
+        }
+        return sets;
+    }
+
+    /**
+     * Counts the legal sets among some cards, without listing them.
+     *
+     * @param cards  - distinct card ids.
+     * @param length - the number of cards to use (the first length entries of cards).
+     * @return       - the number of legal sets among the cards.
+     */
+    public int countSets(int[] cards, int length) {
+        Scratch scratch = this.scratch.get();
+        int[] positions = scratch.positions;
+        for (int i = 0; i < length; ++i)
+            positions[cards[i]] = i;
+
+        try {
+            return featureSize == 3 ? countTriples(scratch, cards, length) : search(scratch.masks, cards, length, 0, 0);
+        } finally {
+            for (int i = 0; i < length; ++i)
+                positions[cards[i]] = -1;
+        }
+    }
+
+    /**
+     * Counts sets of 3 cards: for each pair of cards, the third card is computed feature by feature for all the
+     * pairs sharing their first card at once, and then looked up. Each set {a, b, c} is counted once, from the pair
+     * (a, b) in the order of the cards array.
+     */
+    private int countTriples(Scratch scratch, int[] cards, int length) {
+        scratch.ensureCapacity(length);
+        byte[][] rows = scratch.rows;
+        int[] thirds = scratch.thirds, positions = scratch.positions;
+        for (int feature = 0; feature < featureCount; ++feature) {
+            byte[] column = features[feature], row = rows[feature];
+            for (int i = 0; i < length; ++i)
+                row[i] = column[cards[i]];
+        }
+
+        int sets = 0;
+        for (int first = 0; first < length - 2; ++first) {
+            Arrays.fill(thirds, first + 1, length, 0);
+            for (int feature = 0; feature < featureCount; ++feature) {
+                byte[] row = rows[feature];
+                int value = row[first], weight = weights[feature];
+                // the missing value is -(a + b) mod 3, i.e. (6 - a - b) mod 3 with 6 - a - b in 2..6
+                for (int second = first + 1; second < length; ++second) {
+                    int s = 6 - value - row[second];
+                    thirds[second] += weight * (s - 3 * ((s * 11) >> 5));
+                }
+            }
+            for (int second = first + 1; second < length; ++second)
+                if (positions[thirds[second]] > second) ++sets;
+        }
+        return sets;
+    }
+
+    /**
+     * Counts sets of featureSize cards by a depth first search that cuts a branch as soon as one of its features is
+     * neither all the same nor all different.
+     *
+     * @param masks - per feature, the values in use by the chosen cards as a bit mask (the row of depth).
+     * @param from  - the index of the first candidate for the next card.
+     * @param depth - the number of chosen cards.
+     * @return      - the number of sets extending the chosen cards.
+     */
+    private int search(int[] masks, int[] cards, int length, int from, int depth) {
+        if (depth == featureSize) return 1;
+        int sets = 0;
+        int row = depth * featureCount, next = row + featureCount;
+        for (int i = from; i <= length - (featureSize - depth); ++i) {
+            int card = cards[i];
+            boolean legal = true;
+            for (int feature = 0; feature < featureCount && legal; ++feature) {
+                int bit = 1 << features[feature][card], mask = masks[row + feature];
+                // from the third card on, a feature that is the same so far has to stay so, and a different one too
+                if (depth >= 2)
+                    legal = ((mask & (mask - 1)) == 0) == ((mask & bit) != 0);
+                masks[next + feature] = mask | bit;
+            }
+            if (legal)
+                sets += search(masks, cards, length, i + 1, depth + 1);
+        }
+        return sets;
+    }
+}
@@ -0,0 +1,76 @@
+package bguspl.set;
+
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * An implementation of the UserInterface interface for running the game without a display.
+ * Nothing is drawn: the scores and the winners are recorded, so the outcome of the game can be read when it ends.
+ */
+public class HeadlessUserInterface implements UserInterface {
+
+    /**
+     * The last score set for each player.
+     */
+    private final AtomicIntegerArray scores;
+
+    /**
+     * The ids of the players announced as winners (null until the game ends).
+     */
+    private volatile int[] winners;
+
+    public HeadlessUserInterface(Config config) {
+        scores = new AtomicIntegerArray(config.players);
+    }
+
+    /**
+     * @param player - the player id.
+     * @return       - the last score set for the player.
+     */
+    public int score(int player) {
+        return scores.get(player);
+    }
+
+    /**
+     * @return - the ids of the players announced as winners, or null if the game did not end yet.
+     */
+    public int[] winners() {
+        return winners;
+    }
+
+    @Override
+    public void placeCard(int card, int slot) {}
+
+    @Override
+    public void removeCard(int slot) {}
+
+    @Override
+    public void setCountdown(long millies, boolean warn) {}
+
+    @Override
+    public void setElapsed(long millies) {}
+
+    @Override
+    public void setScore(int player, int score) {
+        scores.set(player, score);
+    }
+
+    @Override
+    public void setFreeze(int player, long millies) {}
+
+    @Override
+    public void placeToken(int player, int slot) {}
+
+    @Override
+    public void removeTokens() {}
+
+    @Override
+    public void removeTokens(int slot) {}
+
+    @Override
+    public void removeToken(int player, int slot) {}
+
+    @Override
+    public void announceWinner(int[] players) {
+        winners = players.clone();
+    }
+}
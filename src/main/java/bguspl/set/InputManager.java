@@ -4,7 +4,6 @@ import bguspl.set.ex.Player;
 
 import java.awt.event.KeyAdapter;
 import java.awt.event.KeyEvent;
-import java.util.logging.Level;
 
 /**
  * This class handles the input from the keyboard, translates it to table grid slots and dispatches accordingly.
@@ -36,7 +35,7 @@ class InputManager extends KeyAdapter {
         int keyCode = e.getKeyCode();
         int player = keyMap[keyCode] - 1;
         if (player >= 0){
-            env.logger.log(Level.SEVERE, "Key " + keyCode + " was pressed by player " + player);
+            env.events.record(EventLog.Type.KEY_PRESSED, player, keyToSlot[keyCode], -1);
             players[player].keyPressed(keyToSlot[keyCode]);
         }
     }
@@ -7,7 +7,9 @@ import bguspl.set.ex.Table;
 import java.awt.*;
 import java.io.File;
 import java.io.IOException;
+import java.nio.file.Paths;
 import java.text.SimpleDateFormat;
+import java.util.Arrays;
 import java.util.Calendar;
 import java.util.Date;
 import java.util.logging.*;
@@ -17,6 +19,16 @@ import java.util.logging.*;
  */
 public class Main {
 
+    /**
+     * The size (in bytes) at which the log rolls over to a new file.
+     */
+    private static final long LOG_FILE_BYTES = 64L << 20;
+
+    /**
+     * The number of log records that may wait to be written before new ones are dropped.
+     */
+    private static final int LOG_QUEUE_CAPACITY = 1 << 16;
+
     /**
      * The game's main function. Creates all data structures and initializes the threads.
      *
@@ -27,9 +39,14 @@ public class Main {
         // create the game environment objects
         Logger logger = initLogger(args.length > 0);
         Config config = new Config(logger, "config.properties");
-        UserInterfaceImpl ui = new UserInterfaceImpl(logger, config);
-        EventQueue.invokeLater(() -> ui.setVisible(true));
-        Env env = new Env(logger, config, ui, new UtilImpl(config));
+        UserInterface ui = config.headless ? new HeadlessUserInterface(config) : new UserInterfaceImpl(logger, config);
+        if (ui instanceof UserInterfaceImpl)
+            EventQueue.invokeLater(() -> ((UserInterfaceImpl) ui).setVisible(true));
+        UtilImpl util = new UtilImpl(config);
+        logger.log(Level.INFO, "set index built in " + util.indexBuildNanos() / 1000 + " microseconds (" + util.setsCount() + " sets).");
+        logger.log(Level.INFO, "random seed: " + config.seed);
+        EventLog events = openEventLog(logger, config);
+        Env env = new Env(logger, config, ui, util, events);
 
         // create the game entities
         Player[] players = new Player[env.config.players];
@@ -37,47 +54,73 @@ public class Main {
         Dealer dealer = new Dealer(env, table, players);
         for (int i = 0; i < players.length; i++)
             players[i] = new Player(env, dealer, table, i, i < env.config.humanPlayers);
-        ui.addKeyListener(new InputManager(env, players));
-        ui.addWindowListener(new WindowManager(env, dealer));
+        if (ui instanceof UserInterfaceImpl) {
+            ((UserInterfaceImpl) ui).addKeyListener(new InputManager(env, players));
+            ((UserInterfaceImpl) ui).addWindowListener(new WindowManager(env, dealer));
+        }
 
         // start the dealer thread
         Thread dealerThread = new Thread(dealer, "dealer");
         dealerThread.start();
 
         try {dealerThread.join();} catch (InterruptedException ignored) {}
+        if (ui instanceof HeadlessUserInterface)
+            env.logger.log(Level.INFO, "game over, winners: " + Arrays.toString(((HeadlessUserInterface) ui).winners())
+                    + ", scores: " + Arrays.toString(Arrays.stream(players).mapToInt(Player::getScore).toArray()));
         env.logger.log(Level.INFO, "Thread " + Thread.currentThread().getName() + " terminated.");
+        events.close();
         for(Handler h:env.logger.getHandlers())
             h.close();
     }
 
-    private static Logger initLogger(boolean disableTimestamp) {
-
-        FileHandler fh;
-        //just to make our log file nicer :)
-        SimpleDateFormat format = new SimpleDateFormat("M-d_HH-mm-ss");
+    /**
+     * Opens the binary event log of the game (next to the text log).
+     *
+     * @return - the event log, or one that records nothing if it is turned off or cannot be created.
+     */
+    private static EventLog openEventLog(Logger logger, Config config) {
+        if (config.eventLogLevel == EventLog.Level.OFF)
+            return EventLog.disabled();
+        String file = "./logs/" + new SimpleDateFormat("M-d_HH-mm-ss").format(Calendar.getInstance().getTime()) + ".events";
         try {
-            //noinspection ResultOfMethodCallIgnored
-            new File("./logs/").mkdirs();
-            fh = new FileHandler("./logs/" + format.format(Calendar.getInstance().getTime()) + ".log");
+            return new EventLog(logger, config.eventLogLevel, Paths.get(file), 1 << 16);
         } catch (IOException e) {
-            throw new RuntimeException(e);
+            logger.log(Level.WARNING, "cannot create the event log " + file + ": " + e);
+            return EventLog.disabled();
         }
+    }
 
-        java.util.logging.Logger logger = java.util.logging.Logger.getLogger("SetGameLogger");
-        logger.setUseParentHandlers(false);
-        fh.setFormatter(new SimpleFormatter() {
+    static Logger initLogger(boolean disableTimestamp) {
+
+        // records are formatted and written on a background thread, so the game threads never wait for the disk
+        Formatter formatter = new SimpleFormatter() {
             private static final String formatWithTimestamp = "[%1$tF %1$tT] [%2$-7s] %3$s%n";
             private static final String formatWithoutTimestamp = "[%2$-7s] %3$s%n";
 
             @Override
-            public synchronized String format(LogRecord lr) {
+            public String format(LogRecord lr) {
                 return String.format(disableTimestamp ? formatWithoutTimestamp : formatWithTimestamp,
                         new Date(lr.getMillis()),
                         lr.getLevel().getLocalizedName(),
                         lr.getMessage()
                 );
             }
-        });
+        };
+
+        Handler fh;
+        //just to make our log file nicer :)
+        SimpleDateFormat format = new SimpleDateFormat("M-d_HH-mm-ss");
+        try {
+            //noinspection ResultOfMethodCallIgnored
+            new File("./logs/").mkdirs();
+            fh = new AsyncLogHandler(Paths.get("./logs/" + format.format(Calendar.getInstance().getTime()) + ".log"),
+                    formatter, LOG_FILE_BYTES, LOG_QUEUE_CAPACITY);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+
+        java.util.logging.Logger logger = java.util.logging.Logger.getLogger("SetGameLogger");
+        logger.setUseParentHandlers(false);
         logger.addHandler(fh);
 
         return logger;
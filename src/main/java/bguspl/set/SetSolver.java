@@ -0,0 +1,185 @@
+package bguspl.set;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.Consumer;
+
+/**
+ * Answers questions about the sets among subsets of the deck (e.g. the 12, 15 or 18 cards on the table in each state of
+ * a recorded game). A subset is a bit mask over the whole deck: bit card % 64 of word card / 64 stands for the card (so
+ * two longs for the standard 81 card deck, see newMask()).
+ * With sets of three cards, the third card of every pair in the subset is looked up in the util's table of pairs (see
+ * Util.completeSet). With sets of other sizes, the sets are searched for among the cards of the subset only (see
+ * UtilImpl.searchSets), so nothing is kept per set of the deck and the largest decks are supported. The queries do not
+ * allocate, so they can be run over millions of subsets (in parallel, see countSets(long[][], int[])). The solver is
+ * immutable and can be shared between threads.
+ */
+public class SetSolver {
+
+    /**
+     * The number of subsets below which countSets(long[][], int[]) does not split the work any further.
+     */
+    private static final int PARALLEL_THRESHOLD = 1024;
+
+    private final UtilImpl util;
+
+    /**
+     * The number of cards in the deck.
+     */
+    private final int deckSize;
+
+    /**
+     * The number of words in a mask.
+     */
+    private final int words;
+
+    /**
+     * True iff sets are of three cards, and are found through util.completeSet.
+     */
+    private final boolean pairs;
+
+    /**
+     * @param config - the game configuration (the deck and the size of a set).
+     * @param util   - finds the sets in the deck.
+     * @throws IllegalArgumentException - if the cards of the deck do not fit in the packed representation of util.
+     */
+    public SetSolver(Config config, UtilImpl util) {
+        if (!util.packsCards())
+            throw new IllegalArgumentException("the cards of a " + config.deckSize + " card deck cannot be packed");
+        this.util = util;
+        deckSize = config.deckSize;
+        words = (deckSize + Long.SIZE - 1) / Long.SIZE;
+        pairs = config.featureSize == 3;
+    }
+
+    /**
+     * @return - a new empty mask.
+     */
+    public long[] newMask() {
+        return new long[words];
+    }
+
+    /**
+     * @param cards - card ids.
+     * @return      - a new mask of the cards.
+     */
+    public long[] mask(int... cards) {
+        long[] mask = newMask();
+        for (int card : cards) {
+            if (card < 0 || card >= deckSize)
+                throw new IllegalArgumentException("card " + card + " is not in the deck of " + deckSize + " cards");
+            mask[card >>> 6] |= 1L << card;
+        }
+        return mask;
+    }
+
+    /**
+     * Writes the card ids of a mask to an array, in increasing order.
+     *
+     * @param mask  - a subset of the deck.
+     * @param cards - the array to write to (at least as many entries as there are cards in the mask).
+     * @return      - the number of cards written.
+     */
+    public int cards(long[] mask, int[] cards) {
+        int count = 0;
+        for (int card = UtilImpl.nextCard(mask, 0); card >= 0; card = UtilImpl.nextCard(mask, card + 1))
+            cards[count++] = card;
+        return count;
+    }
+
+    /**
+     * @param mask - a subset of the deck.
+     * @return     - the number of legal sets in the subset.
+     */
+    public int countSets(long[] mask) {
+        return findSets(mask, null, null, Integer.MAX_VALUE);
+    }
+
+    /**
+     * @param mask - a subset of the deck.
+     * @param set  - set to the cards of a legal set in the subset (one with the lowest first card), sorted (featureSize
+     *               entries, its contents are undefined if there is no set).
+     * @return     - true iff there is a legal set in the subset.
+     */
+    public boolean firstSet(long[] mask, int[] set) {
+        return findSets(mask, set, null, 1) > 0;
+    }
+
+    /**
+     * Calls an action with every legal set in a subset, in the order of their lowest cards.
+     *
+     * @param mask   - a subset of the deck.
+     * @param set    - set to the cards of each set, sorted, before the action is called (featureSize entries).
+     * @param action - called with set for each set (it must not modify set).
+     */
+    public void forEachSet(long[] mask, int[] set, Consumer<int[]> action) {
+        findSets(mask, set, action, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Finds up to limit sets in a subset, in the order of their lowest cards (see UtilImpl.searchSets for the
+     * parameters).
+     */
+    private int findSets(long[] mask, int[] set, Consumer<int[]> action, int limit) {
+        if (!pairs)
+            return util.searchSets(mask, set, action, limit);
+
+        // every set {a < b < c} is found once, from the pair (a, b)
+        int found = 0;
+        for (int a = UtilImpl.nextCard(mask, 0); a >= 0 && found < limit; a = UtilImpl.nextCard(mask, a + 1))
+            for (int b = UtilImpl.nextCard(mask, a + 1); b >= 0 && found < limit; b = UtilImpl.nextCard(mask, b + 1)) {
+                int c = util.completeSet(a, b);
+                if (c <= b || (mask[c >>> 6] & (1L << c)) == 0) continue;
+                if (set != null) {
+                    set[0] = a;
+                    set[1] = b;
+                    set[2] = c;
+                }
+                if (action != null) action.accept(set);
+                ++found;
+            }
+        return found;
+    }
+
+    /**
+     * Counts the legal sets in many subsets, in parallel (in the common fork/join pool).
+     *
+     * @param masks  - subsets of the deck.
+     * @param counts - set to the number of legal sets in each subset (at least masks.length entries).
+     */
+    public void countSets(long[][] masks, int[] counts) {
+        if (counts.length < masks.length)
+            throw new IllegalArgumentException("room for " + counts.length + " counts, " + masks.length + " needed");
+        ForkJoinPool.commonPool().invoke(new CountTask(masks, counts, 0, masks.length));
+    }
+
+    /**
+     * Counts the sets in a range of subsets, splitting the range in halves while it is large.
+     */
+    private class CountTask extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final long[][] masks;
+        private final int[] counts;
+        private final int from, to;
+
+        CountTask(long[][] masks, int[] counts, int from, int to) {
+            this.masks = masks;
+            this.counts = counts;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= PARALLEL_THRESHOLD) {
+                for (int i = from; i < to; ++i)
+                    counts[i] = countSets(masks[i]);
+                return;
+            }
+            int middle = (from + to) >>> 1;
+            invokeAll(new CountTask(masks, counts, from, middle), new CountTask(masks, counts, middle, to));
+        }
+    }
+}
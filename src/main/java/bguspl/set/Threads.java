@@ -0,0 +1,70 @@
+package bguspl.set;
+
+import java.lang.reflect.Method;
+import java.util.logging.Level;
+
+/**
+ * Creates the game's threads according to the configured thread model (platform or virtual threads).
+ * Virtual threads are looked up reflectively, so the game still runs on JVMs that do not have them (in which case
+ * platform threads are used instead).
+ */
+public class Threads {
+
+    /**
+     * Thread.ofVirtual(), Thread.Builder.name(String) and Thread.Builder.unstarted(Runnable) (null if unavailable).
+     */
+    private static final Method ofVirtual;
+    private static final Method name;
+    private static final Method unstarted;
+
+    static {
+        Method of = null, n = null, u = null;
+        try {
+            Class<?> builder = Class.forName("java.lang.Thread$Builder");
+            of = Thread.class.getMethod("ofVirtual");
+            n = builder.getMethod("name", String.class);
+            u = builder.getMethod("unstarted", Runnable.class);
+        } catch (ReflectiveOperationException ignored) {}
+        ofVirtual = of;
+        name = n;
+        unstarted = u;
+    }
+
+    /**
+     * True iff the warning about missing virtual thread support was already logged.
+     */
+    private static volatile boolean warned;
+
+    private Threads() {}
+
+    /**
+     * @return - true iff the running JVM supports virtual threads.
+     */
+    public static boolean virtualThreadsSupported() {
+        return ofVirtual != null;
+    }
+
+    /**
+     * Creates a new (unstarted) thread using the thread model from the configuration.
+     *
+     * @param env      - the game environment object.
+     * @param runnable - the code the thread should run.
+     * @param name     - the name of the thread.
+     * @return         - the new thread.
+     */
+    public static Thread newThread(Env env, Runnable runnable, String name) {
+        if (env.config.virtualThreads) {
+            if (virtualThreadsSupported())
+                try {
+                    return (Thread) unstarted.invoke(Threads.name.invoke(ofVirtual.invoke(null), name), runnable);
+                } catch (ReflectiveOperationException e) {
+                    throw new IllegalStateException("cannot create a virtual thread", e);
+                }
+            if (!warned) {
+                warned = true;
+                env.logger.log(Level.WARNING, "virtual threads are not supported by this JVM, using platform threads.");
+            }
+        }
+        return new Thread(runnable, name);
+    }
+}
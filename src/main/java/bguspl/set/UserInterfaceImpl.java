@@ -2,9 +2,16 @@ package bguspl.set;
 
 import javax.swing.*;
 import java.awt.*;
-import java.io.FileNotFoundException;
-import java.net.URL;
+import java.awt.image.BufferedImage;
 import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Queue;
+import java.util.StringJoiner;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -12,9 +19,16 @@ import static java.lang.String.format;
 
 /**
  * Java Swing implementation of the UserInterface interface.
+ * The game threads never touch Swing: every update is queued and applied on the event dispatch thread once per
+ * frame, and only the cells whose card changed are repainted.
  */
 public class UserInterfaceImpl extends JFrame implements UserInterface {
 
+    /**
+     * The time between two frames (in milliseconds).
+     */
+    private static final int FRAME_MILLIS = 16;
+
     private final TimerPanel timerPanel;
     private final GamePanel gamePanel;
     private final PlayersPanel playersPanel;
@@ -22,9 +36,25 @@ public class UserInterfaceImpl extends JFrame implements UserInterface {
     private final Logger logger;
     private final Config config;
 
-    static String intInBaseToPaddedString(int n, int padding, int base) {
-        return format("%" + padding + "s", Integer.toString(n, base)).replace(' ', '0');
-    }
+    /**
+     * The updates waiting for the next frame, in the order they were made.
+     */
+    private final Queue<Runnable> pending = new ConcurrentLinkedQueue<>();
+
+    /**
+     * The latest timer update waiting for the next frame (only the last one is shown, so earlier ones are dropped).
+     */
+    private final AtomicReference<Runnable> timerUpdate = new AtomicReference<>();
+
+    /**
+     * True iff a frame is scheduled to apply the waiting updates.
+     */
+    private final AtomicBoolean frameScheduled = new AtomicBoolean();
+
+    /**
+     * Fires (once, on the event dispatch thread) when the next frame is due.
+     */
+    private final Timer frameTimer;
 
     public UserInterfaceImpl(Logger logger, Config config) {
 
@@ -61,6 +91,49 @@ public class UserInterfaceImpl extends JFrame implements UserInterface {
         setTitle("Set Card Game");
         setLocationRelativeTo(null);
         setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
+
+        frameTimer = new Timer(FRAME_MILLIS, e -> applyUpdates());
+        frameTimer.setRepeats(false);
+    }
+
+    /**
+     * Queues an update to be applied in the next frame.
+     *
+     * @param update - the update to apply on the event dispatch thread.
+     */
+    private void post(Runnable update) {
+        pending.add(update);
+        scheduleFrame();
+    }
+
+    /**
+     * Replaces the waiting timer update (if any) with a newer one.
+     *
+     * @param update - the update to apply on the event dispatch thread.
+     */
+    private void postTimerUpdate(Runnable update) {
+        if (timerUpdate.getAndSet(update) == null)
+            scheduleFrame();
+    }
+
+    private void scheduleFrame() {
+        if (frameScheduled.compareAndSet(false, true))
+            EventQueue.invokeLater(frameTimer::restart);
+    }
+
+    /**
+     * Applies all the waiting updates (called on the event dispatch thread).
+     */
+    private void applyUpdates() {
+        // updates posted from now on schedule another frame
+        frameScheduled.set(false);
+        Runnable update;
+        while ((update = pending.poll()) != null)
+            update.run();
+        update = timerUpdate.getAndSet(null);
+        if (update != null)
+            update.run();
+        gamePanel.repaintDirtySlots();
     }
 
     private class TimerPanel extends JPanel {
@@ -96,39 +169,47 @@ public class UserInterfaceImpl extends JFrame implements UserInterface {
 
     private class GamePanel extends JLayeredPane {
 
-        private final Image emptyCard;
-        private final Image[] deck;
+        private final CardImages cardImages;
         private final Image[][] grid;
-        private final boolean[][][] playerTokens;
         private final JLabel[][] tokenText;
 
-        private Image loadImageResource(String filename) {
-            URL imageResource = getClass().getClassLoader().getResource(filename);
-            if (imageResource == null)
-                throw new RuntimeException(new FileNotFoundException(filename));
-            return new ImageIcon(imageResource).getImage();
-        }
+        /**
+         * The players that have a token on each slot.
+         */
+        private final BitSet[] slotTokens;
+
+        /**
+         * The overlay text shown on a slot for each set of players seen so far.
+         */
+        private final Map<BitSet, String> tokenTexts = new HashMap<>();
+
+        /**
+         * The grid of cards as last drawn: paintComponent only copies the requested region from it.
+         */
+        private final BufferedImage backBuffer;
+
+        /**
+         * The slots whose card changed since they were last drawn to the back buffer.
+         */
+        private final BitSet dirtySlots = new BitSet();
 
         private GamePanel() {
 
             setPreferredSize(new Dimension(config.columns * config.cellWidth, config.rows * config.cellHeight));
 
-            // init deck and load all pictures from png files
-            assert config.featureSize < 10; // otherwise there will be naming conflicts
-
-            // load the image resources
-            deck = new Image[config.deckSize];
-            for (int i = 0; i < config.deckSize; ++i)
-                deck[i] = loadImageResource("cards/" + intInBaseToPaddedString(i, config.featureCount, config.featureSize) + ".png");
-            emptyCard = loadImageResource("cards/empty_card.png");
+            // the card images are loaded when first placed (or in the background if prewarming)
+            cardImages = new CardImages(logger, config);
+            if (config.prewarmCardImages)
+                cardImages.prewarm();
 
             grid = new Image[config.rows][config.columns];
             tokenText = new JLabel[config.rows][config.columns];
-            playerTokens = new boolean[config.players][config.rows][config.columns];
+            slotTokens = new BitSet[config.tableSize];
+            Arrays.setAll(slotTokens, slot -> new BitSet(config.players));
             for (int row = 0; row < config.rows; row++) {
                 for (int column = 0; column < config.columns; column++) {
                     // init the cards on the table grid as empty cards
-                    grid[row][column] = emptyCard;
+                    grid[row][column] = cardImages.emptyCard();
 
                     // init the JLabel selection overlay
                     tokenText[row][column] = new JLabel("");
@@ -140,76 +221,103 @@ public class UserInterfaceImpl extends JFrame implements UserInterface {
                     add(tokenText[row][column]);
                 }
             }
+
+            backBuffer = new BufferedImage(config.columns * config.cellWidth, config.rows * config.cellHeight,
+                    BufferedImage.TYPE_INT_ARGB);
+            for (int row = 0; row < config.rows; row++)
+                for (int column = 0; column < config.columns; column++)
+                    drawCell(row, column);
         }
 
         private void placeCard(int slot, int card) {
-            logger.log(Level.SEVERE, "placing card " + card + " in slot " + slot);
             int row = slot / config.columns;
             int column = slot % config.columns;
-            grid[row][column] = deck[card];
-            validate();
-            repaint();
+            grid[row][column] = cardImages.get(card);
+            dirtySlots.set(slot);
         }
 
         private void removeCard(int slot) {
-            logger.log(Level.SEVERE, "removing card from slot " + slot);
             int row = slot / config.columns;
             int column = slot % config.columns;
-            grid[row][column] = emptyCard;
-            validate();
-            repaint();
+            grid[row][column] = cardImages.emptyCard();
+            dirtySlots.set(slot);
+        }
+
+        /**
+         * Draws the changed slots to the back buffer and repaints only their cells.
+         */
+        private void repaintDirtySlots() {
+            for (int slot = dirtySlots.nextSetBit(0); slot >= 0; slot = dirtySlots.nextSetBit(slot + 1)) {
+                drawCell(slot / config.columns, slot % config.columns);
+                repaint(slot % config.columns * config.cellWidth, slot / config.columns * config.cellHeight,
+                        config.cellWidth, config.cellHeight);
+            }
+            dirtySlots.clear();
+        }
+
+        private void drawCell(int row, int column) {
+            Graphics2D g = backBuffer.createGraphics();
+            try {
+                int x = column * config.cellWidth;
+                int y = row * config.cellHeight;
+                // clear the previous card first, in case the new image is transparent or smaller than the cell
+                g.setComposite(AlphaComposite.Clear);
+                g.fillRect(x, y, config.cellWidth, config.cellHeight);
+                g.setComposite(AlphaComposite.SrcOver);
+                g.drawImage(grid[row][column], x, y, null);
+            } finally {
+                g.dispose();
+            }
         }
 
         private void placeToken(int player, int slot) {
-            logger.log(Level.SEVERE, "player " + player + " placing token on slot " + slot);
-            int row = slot / config.columns;
-            int column = slot % config.columns;
-            playerTokens[player][row][column] = true;
-            tokenText[row][column].setText(generatePlayersTokenText(row, column));
+            slotTokens[slot].set(player);
+            updateTokenText(slot);
         }
 
         private void removeTokens() {
-            logger.log(Level.SEVERE, "removing all tokens");
             for (int i = 0; i < config.tableSize; i++)
                 removeTokens(i);
         }
 
         private void removeTokens(int slot) {
-            logger.log(Level.SEVERE, "removing tokens from slot " + slot);
-            int row = slot / config.columns;
-            int column = slot % config.columns;
-            for (int player = 0; player < playerTokens.length; player++) {
-                playerTokens[player][row][column] = false;
-                tokenText[row][column].setText(generatePlayersTokenText(row, column));
-            }
+            slotTokens[slot].clear();
+            updateTokenText(slot);
         }
 
         private void removeToken(int player, int slot) {
-            logger.log(Level.SEVERE, "removing player " + player + " token from slot " + slot);
-            int row = slot / config.columns;
-            int column = slot % config.columns;
-            playerTokens[player][row][column] = false;
-            tokenText[row][column].setText(generatePlayersTokenText(row, column));
+            slotTokens[slot].clear(player);
+            updateTokenText(slot);
         }
 
-        private String generatePlayersTokenText(int row, int column) {
-            String text = "";
-            for (int player = 0; player < config.players; player++) {
-                if (playerTokens[player][row][column])
-                    text = text.concat(config.playerNames[player] + ", ");
+        /**
+         * Shows the names of the players that have a token on the slot (the label is only touched if the text changed,
+         * since setting it triggers a relayout of the label).
+         */
+        private void updateTokenText(int slot) {
+            BitSet players = slotTokens[slot];
+            String text = tokenTexts.get(players);
+            if (text == null) {
+                text = generatePlayersTokenText(players);
+                tokenTexts.put((BitSet) players.clone(), text);
             }
-            if (text.length() < 2)
-                return "";
-            return text.substring(0, text.length() - 2);
+            JLabel label = tokenText[slot / config.columns][slot % config.columns];
+            if (!text.equals(label.getText()))
+                label.setText(text);
+        }
+
+        private String generatePlayersTokenText(BitSet players) {
+            StringJoiner text = new StringJoiner(", ");
+            for (int player = players.nextSetBit(0); player >= 0; player = players.nextSetBit(player + 1))
+                text.add(config.playerNames[player]);
+            return text.toString();
         }
 
         @Override
         public void paintComponent(Graphics g) {
 
-            // draw card images
-            for (int row = 0; row < config.rows; row++)
-                for (int column = 0; column < config.columns; column++)
-                    g.drawImage(grid[row][column], (column * config.cellWidth), (row * config.cellHeight), this);
+            // copy the card images from the back buffer (drawing is clipped to the region being repainted)
+            g.drawImage(backBuffer, 0, 0, this);
         }
     }
 
@@ -237,12 +345,10 @@ public class UserInterfaceImpl extends JFrame implements UserInterface {
         }
 
         private void setScore(int player, int score) {
-            logger.log(Level.SEVERE, "setting player " + player + " score to " + score);
             playersTable[1][player].setText(Integer.toString(score));
         }
 
         private void setFreeze(int player, long millies) {
-            logger.log(Level.SEVERE, "setting player " + player + " freeze to " + millies);
             if (millies > 0) {
                 this.playersTable[0][player].setText(config.playerNames[player] + " (" + millies / 1000 + ")");
                 this.playersTable[0][player].setForeground(Color.RED);
@@ -268,7 +374,7 @@ public class UserInterfaceImpl extends JFrame implements UserInterface {
         }
 
         private void announceWinner(int[] players) {
-            logger.log(Level.SEVERE, "announcing winners: " + Arrays.toString(players));
+            logger.log(Level.INFO, "announcing winners: " + Arrays.toString(players));
             if (players.length == 1)
                 winnerAnnouncement.setText("THE WINNER IS: " + config.playerNames[players[0]] + "!!!");
             else {
@@ -283,56 +389,59 @@ public class UserInterfaceImpl extends JFrame implements UserInterface {
 
     @Override
     public void placeCard(int card, int slot) {
-        gamePanel.placeCard(slot, card);
+        post(() -> gamePanel.placeCard(slot, card));
     }
 
     @Override
     public void removeCard(int slot) {
-        gamePanel.removeCard(slot);
+        post(() -> gamePanel.removeCard(slot));
     }
 
     public void setCountdown(long millies, boolean warn) {
-        timerPanel.setCountdown(millies, warn);
+        postTimerUpdate(() -> timerPanel.setCountdown(millies, warn));
     }
 
     public void setElapsed(long millies) {
-        timerPanel.setElapsed(millies);
+        postTimerUpdate(() -> timerPanel.setElapsed(millies));
     }
 
     @Override
     public void setScore(int player, int score) {
-        playersPanel.setScore(player, score);
+        post(() -> playersPanel.setScore(player, score));
     }
 
     @Override
     public void setFreeze(int player, long millies) {
-        playersPanel.setFreeze(player, millies);
+        post(() -> playersPanel.setFreeze(player, millies));
     }
 
     @Override
     public void placeToken(int player, int slot) {
-        gamePanel.placeToken(player, slot);
+        post(() -> gamePanel.placeToken(player, slot));
     }
 
     @Override
     public void removeTokens() {
-        gamePanel.removeTokens();
+        post(gamePanel::removeTokens);
     }
 
     @Override
     public void removeTokens(int slot) {
-        gamePanel.removeTokens(slot);
+        post(() -> gamePanel.removeTokens(slot));
     }
 
     @Override
     public void removeToken(int player, int slot) {
-        gamePanel.removeToken(player, slot);
+        post(() -> gamePanel.removeToken(player, slot));
     }
 
     @Override
     public void announceWinner(int[] players) {
-        playersPanel.setVisible(false);
-        winnerPanel.announceWinner(players);
-        winnerPanel.setVisible(true);
+        int[] winners = players.clone();
+        post(() -> {
+            playersPanel.setVisible(false);
+            winnerPanel.announceWinner(winners);
+            winnerPanel.setVisible(true);
+        });
     }
 }
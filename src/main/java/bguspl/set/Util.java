@@ -28,10 +28,41 @@ public interface Util {
      */
     boolean testSet(int[] cards);
 
+    /**
+     * Computes the card that completes a legal set together with the two given cards.
+     * Note: only defined when a set is made of three cards (i.e. config.featureSize == 3).
+     * @param first  - a card id.
+     * @param second - another card id.
+     * @return       - the id of the third card of the set, or -1 if the game does not use sets of three cards.
+     */
+    int completeSet(int first, int second);
+
+    /**
+     * Returns the number of legal sets in the whole deck. Set ids range from 0 to setsCount() - 1.
+     * @return - the number of sets, or -1 if the sets of this deck are not indexed.
+     */
+    int setsCount();
+
+    /**
+     * Returns the cards of a legal set (sorted by card id).
+     * Note: the returned array is shared and must not be modified.
+     * @param set - the set id.
+     * @return    - the card ids of the set.
+     */
+    int[] setCards(int set);
+
+    /**
+     * Returns the ids of all the legal sets the given card is part of.
+     * Note: the returned array is shared and must not be modified.
+     * @param card - the card id.
+     * @return     - the set ids, or null if the sets of this deck are not indexed.
+     */
+    int[] setsOf(int card);
+
     /**
      * Finds and returns up to count sets in the given collection of cards.
      * @param deck  - a collection of cards (may not include null objects).
-     * @param count - the maximum number of sets to find.
+     * @param count - the maximum number of sets to find (no sets are looked for if count <= 0).
      * @return      - a list of up to count integer arrays, each one contains the card ids of a legal set.
      */
     List<int[]> findSets(List<Integer> deck, int count);
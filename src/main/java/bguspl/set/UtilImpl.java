@@ -3,7 +3,7 @@ package bguspl.set;
 import java.util.Arrays;
 import java.util.LinkedList;
 import java.util.List;
-import java.util.stream.IntStream;
+import java.util.function.Consumer;
 
 /**
  * The implementation of the UserInterface interface.
@@ -12,15 +12,156 @@ public class UtilImpl implements Util {
 
     private final Config config;
 
+    /**
+     * The features of every card, stored feature by feature.
+     */
+    private final FeatureMatrix features;
+
+    /**
+     * The number of bits used for a single feature in a packed card: one bit per possible value plus a guard bit.
+     */
+    private final int laneWidth;
+
+    /**
+     * The lowest bit of every feature lane.
+     */
+    private final long laneLows;
+
+    /**
+     * The value bits (i.e. all bits except the guard bit) of every feature lane.
+     */
+    private final long laneValues;
+
+    /**
+     * The guard bit of every feature lane.
+     */
+    private final long laneGuards;
+
+    /**
+     * The packed representation of each card in the deck (null if the features do not fit in a long).
+     * Each feature is stored as a one-hot lane of laneWidth bits, so or-ing cards together tells per feature which
+     * values are in use.
+     */
+    private final long[] packed;
+
+    /**
+     * The largest deck for which the set index (thirdCard, sets and cardSets) is built.
+     */
+    private static final int MAX_INDEXED_DECK_SIZE = 1024;
+
+    /**
+     * The card completing a set for every pair of cards (thirdCard[first * deckSize + second]).
+     */
+    private final short[] thirdCard;
+
+    /**
+     * All the legal sets in the deck (each one sorted by card id). The index in this array is the set id.
+     */
+    private final int[][] sets;
+
+    /**
+     * The ids of the sets each card is part of.
+     */
+    private final int[][] cardSets;
+
+    /**
+     * The number of nanoseconds it took to build the set index.
+     */
+    private final long indexBuildNanos;
+
+    /**
+     * Scratch bitmap of the cards passed to findSets (cleared after every call).
+     */
+    private final ThreadLocal<long[]> present;
+
     public UtilImpl(Config config) {
         this.config = config;
+        features = new FeatureMatrix(config);
+
+        laneWidth = config.featureSize + 1;
+        long lows = 0, values = 0, guards = 0;
+        boolean packable = laneWidth * config.featureCount <= Long.SIZE;
+        if (packable)
+            for (int i = 0; i < config.featureCount; ++i) {
+                lows |= 1L << (i * laneWidth);
+                values |= ((1L << config.featureSize) - 1) << (i * laneWidth);
+                guards |= 1L << (i * laneWidth + config.featureSize);
+            }
+        laneLows = lows;
+        laneValues = values;
+        laneGuards = guards;
+
+        packed = packable ? new long[config.deckSize] : null;
+        if (packable)
+            for (int card = 0; card < config.deckSize; ++card)
+                packed[card] = packCard(card);
+        present = ThreadLocal.withInitial(() -> new long[(config.deckSize + Long.SIZE - 1) / Long.SIZE]);
+
+        long start = System.nanoTime();
+        boolean indexed = packable && config.featureSize == 3 && config.deckSize <= MAX_INDEXED_DECK_SIZE;
+        thirdCard = indexed ? buildThirdCard() : null;
+        sets = indexed ? buildSets() : null;
+        cardSets = indexed ? buildCardSets() : null;
+        indexBuildNanos = System.nanoTime() - start;
+    }
+
+    private short[] buildThirdCard() {
+        int n = config.deckSize;
+        short[] third = new short[n * n];
+        for (int first = 0; first < n; ++first)
+            for (int second = 0; second < n; ++second)
+                third[first * n + second] = (short) computeThirdCard(first, second);
+        return third;
+    }
+
+    private int[][] buildSets() {
+        int n = config.deckSize;
+        int[][] sets = new int[n * (n - 1) / 6][];
+        int id = 0;
+        for (int first = 0; first < n; ++first)
+            for (int second = first + 1; second < n; ++second) {
+                int third = thirdCard[first * n + second];
+                if (third > second)
+                    sets[id++] = new int[]{first, second, third};
+            }
+        return sets;
+    }
+
+    private int[][] buildCardSets() {
+        int[] counts = new int[config.deckSize];
+        for (int[] set : sets)
+            for (int card : set)
+                ++counts[card];
+
+        int[][] cardSets = new int[config.deckSize][];
+        for (int card = 0; card < config.deckSize; ++card)
+            cardSets[card] = new int[counts[card]];
+        Arrays.fill(counts, 0);
+        for (int id = 0; id < sets.length; ++id)
+            for (int card : sets[id])
+                cardSets[card][counts[card]++] = id;
+        return cardSets;
     }
 
     private void cardToFeatures(int card, int[] features) {
+        for (int i = 0; i < config.featureCount; ++i)
+            features[i] = this.features.feature(card, i);
+    }
+
+    private long packCard(int card) {
+        long code = 0;
         for (int i = config.featureCount - 1; i >= 0; --i) {
-            features[i] = card % config.featureSize;
+            code |= 1L << (i * laneWidth + card % config.featureSize);
             card /= config.featureSize;
         }
+        return code;
+    }
+
+    private int unpackCard(long code) {
+        int card = 0;
+        for (int i = 0; i < config.featureCount; ++i)
+            card = card * config.featureSize + Long.numberOfTrailingZeros(code >>> (i * laneWidth));
+        return card;
     }
 
     @Override
@@ -33,38 +174,230 @@ public class UtilImpl implements Util {
     @Override
     public int[][] cardsToFeatures(int[] cards) {
         int[][] features = new int[cards.length][config.featureCount];
-        IntStream.range(0, cards.length).forEach(i -> cardToFeatures(cards[i], features[i]));
+        for (int i = 0; i < cards.length; ++i)
+            cardToFeatures(cards[i], features[i]);
+        return features;
+    }
+
+    /**
+     * @return - the features of every card, with bulk operations for analysing many cards at once.
+     */
+    public FeatureMatrix featureMatrix() {
         return features;
     }
 
+    /**
+     * @return - the number of nanoseconds it took to build the set index at construction.
+     */
+    public long indexBuildNanos() {
+        return indexBuildNanos;
+    }
+
+    @Override
+    public int completeSet(int first, int second) {
+        if (thirdCard != null) return thirdCard[first * config.deckSize + second];
+        return computeThirdCard(first, second);
+    }
+
+    @Override
+    public int setsCount() {
+        return sets == null ? -1 : sets.length;
+    }
+
+    @Override
+    public int[] setCards(int set) {
+        return sets[set];
+    }
+
+    @Override
+    public int[] setsOf(int card) {
+        return cardSets == null ? null : cardSets[card];
+    }
+
+    private int computeThirdCard(int first, int second) {
+        if (config.featureSize != 3 || packed == null) return -1;
+
+        long used = packed[first] | packed[second];
+        // lanes in which the two cards differ have two bits set, so clearing the lowest bit leaves them non-zero
+        long differ = ((used & (used - laneLows)) + laneValues) & laneGuards;
+        differ -= differ >>> config.featureSize;
+        // same value -> keep it, different values -> take the one value not in use
+        return unpackCard((used & ~differ) | (~used & differ));
+    }
+
     @Override
     public boolean testSet(int[] cards) {
-        int[][] features = cardsToFeatures(Arrays.copyOf(cards, cards.length));
+        if (cards.length == 3 && config.featureSize == 3 && packed != null)
+            return completeSet(cards[0], cards[1]) == cards[2];
+        if (cards.length == config.featureSize && packed != null)
+            return testPacked(cards);
+
+        int[][] features = cardsToFeatures(cards);
+        boolean[] seen = new boolean[config.featureSize];
         for (int i = 0; i < config.featureCount; ++i) {
             boolean sameSame = true, butDifferent = true;
 
-            // check if this features is sameSame in all cards
-            for (int j = 1; j < features.length; ++j)
-                if (features[0][i] != features[j][i]) {
-                    sameSame = false;
-                    break;
-                }
-
-            // check if this feature is butDifferent in all cards
-            for (int j = 1; j < features.length; ++j)
-                for (int k = j; k < features.length; ++k)
-                    if (features[j - 1][i] == features[k][i]) {
-                        butDifferent = false;
-                        break;
-                    }
+            // one pass per feature: sameSame iff all values equal the first, butDifferent iff no value repeats
+            for (int[] card : features) {
+                int value = card[i];
+                if (value != features[0][i]) sameSame = false;
+                if (seen[value]) butDifferent = false;
+                seen[value] = true;
+            }
+            Arrays.fill(seen, false);
 
             if (sameSame == butDifferent) return false;
         }
         return true;
     }
 
+    /**
+     * Checks featureSize cards at once, all features in parallel: in every lane of the or of the cards, either a
+     * single value is in use (all the same) or all featureSize values are (all different, since there are as many
+     * cards as values).
+     */
+    private boolean testPacked(int[] cards) {
+        long used = 0;
+        for (int card : cards)
+            used |= packed[card];
+        // lanes with more than one value in use are non-zero after clearing their lowest bit
+        long several = used & (used - laneLows);
+        // lanes with all the values in use carry into their guard bit when 1 is added
+        long full = (used + laneLows) & laneGuards;
+        full -= full >>> config.featureSize;
+        return (several & ~full) == 0;
+    }
+
     @Override
     public List<int[]> findSets(List<Integer> deck, int count) {
+        if (count <= 0)
+            return new LinkedList<>();
+        if (config.featureSize < 3 || packed == null)
+            return findSetsByCombinations(deck, count);
+        if (config.featureSize > 3)
+            return findSetsBySearch(deck, count);
+
+        LinkedList<int[]> sets = new LinkedList<>();
+        long[] present = this.present.get();
+        for (int card : deck)
+            present[card >>> 6] |= 1L << card;
+
+        try {
+            // every set {a < b < c} is found exactly once, from the pair (a, b)
+            for (int a = nextCard(present, 0); a >= 0; a = nextCard(present, a + 1))
+                for (int b = nextCard(present, a + 1); b >= 0; b = nextCard(present, b + 1)) {
+                    int c = completeSet(a, b);
+                    if (c > b && (present[c >>> 6] & (1L << c)) != 0) {
+                        sets.add(new int[]{a, b, c});
+                        if (sets.size() >= count) return sets;
+                    }
+                }
+            return sets;
+        } finally {
+            for (int card : deck)
+                present[card >>> 6] = 0;
+        }
+    }
+
+    /**
+     * @return - the smallest card in the bitmap that is not smaller than from, or -1 if there is none.
+     */
+    static int nextCard(long[] bitmap, int from) {
+        int word = from >>> 6;
+        if (word >= bitmap.length) return -1;
+        long bits = bitmap[word] & (-1L << from);
+        while (bits == 0) {
+            if (++word == bitmap.length) return -1;
+            bits = bitmap[word];
+        }
+        return word * Long.SIZE + Long.numberOfTrailingZeros(bits);
+    }
+
+    /**
+     * Finds sets of featureSize cards by a depth first search (see searchSets).
+     */
+    private List<int[]> findSetsBySearch(List<Integer> deck, int count) {
+        LinkedList<int[]> sets = new LinkedList<>();
+        long[] present = this.present.get();
+        for (int card : deck)
+            present[card >>> 6] |= 1L << card;
+
+        try {
+            searchSets(present, new int[config.featureSize], set -> sets.add(set.clone()), count);
+            return sets;
+        } finally {
+            for (int card : deck)
+                present[card >>> 6] = 0;
+        }
+    }
+
+    /**
+     * @return - true iff the cards fit in the packed representation, which searchSets needs.
+     */
+    boolean packsCards() {
+        return packed != null;
+    }
+
+    /**
+     * Finds the sets among the cards of a bitmap by a depth first search over the cards in increasing order. A branch
+     * is cut as soon as its cards are neither all the same nor all different in some feature, and the last card of a
+     * set (of 3 cards or more) is not searched for: it is determined by the others, so it is only looked up.
+     * Nothing is allocated, so the search can be run over many subsets of the deck (see SetSolver).
+     *
+     * @param present - the cards to search among (bit card % 64 of word card / 64).
+     * @param set     - set to the cards of each set found, sorted (featureSize entries, or null to only count).
+     * @param action  - called with set for each set found (or null).
+     * @param limit   - the maximum number of sets to find.
+     * @return        - the number of sets found.
+     * @pre packsCards()
+     */
+    int searchSets(long[] present, int[] set, Consumer<int[]> action, int limit) {
+        return limit <= 0 ? 0 : search(present, 0, set, 0, -1, 0, 0, action, limit);
+    }
+
+    /**
+     * Extends the chosen cards by one card in every possible way.
+     *
+     * @param from     - the first candidate for the next card.
+     * @param depth    - the number of chosen cards (the first depth entries of set).
+     * @param previous - the last chosen card (-1 if none).
+     * @param used     - the or of the packed chosen cards.
+     * @param same     - the guard bits of the lanes in which the chosen cards all have the same value (once 2 are
+     *                   chosen).
+     * @return         - the number of sets found (at most limit).
+     */
+    private int search(long[] present, int from, int[] set, int depth, int previous, long used, long same,
+                       Consumer<int[]> action, int limit) {
+        int k = config.featureSize;
+        if (depth == k) {
+            if (action != null) action.accept(set);
+            return 1;
+        }
+        if (depth == k - 1 && depth >= 2) {
+            // the common value in the lanes that are all the same, the one missing value in the others
+            long sameValues = same - (same >>> k);
+            int last = unpackCard((used & sameValues) | (~used & laneValues & ~sameValues));
+            if (last <= previous || (present[last >>> 6] & (1L << last)) == 0) return 0;
+            if (set != null) set[depth] = last;
+            if (action != null) action.accept(set);
+            return 1;
+        }
+
+        int found = 0;
+        for (int card = nextCard(present, from); card >= 0 && found < limit; card = nextCard(present, card + 1)) {
+            long code = packed[card];
+            // the lanes in which the card repeats a value in use: the second card decides which lanes are all the
+            // same, and every later card has to repeat a value exactly in those lanes
+            long repeats = ((used & code) + laneValues) & laneGuards;
+            if (depth >= 2 && repeats != same) continue;
+            if (set != null) set[depth] = card;
+            found += search(present, card + 1, set, depth + 1, card, used | code, depth == 1 ? repeats : same, action,
+                    limit - found);
+        }
+        return found;
+    }
+
+    private List<int[]> findSetsByCombinations(List<Integer> deck, int count) {
         LinkedList<int[]> sets = new LinkedList<>();
         int n = deck.size();
         int r = config.featureSize;
@@ -1,18 +1,17 @@
 package bguspl.set.ex;
 
 import bguspl.set.Env;
-import org.w3c.dom.ls.LSOutput;
+import bguspl.set.EventLog;
+import bguspl.set.Threads;
 
 import java.util.*;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
 import java.util.logging.Level;
-import java.util.stream.Collectors;
-import java.util.stream.IntStream;
-
-import static java.lang.Thread.sleep;
 
 /**
  * This class manages the dealer's threads and data
@@ -31,9 +30,14 @@ public class Dealer implements Runnable {
     private final Player[] players;
 
     /**
-     * The list of card ids that are left in the dealer's deck.
+     * The card ids that are left in the dealer's deck.
+     */
+    private final Deck deck;
+
+    /**
+     * The cards still in the game (deck and table) and the number of sets that can still be formed from them.
      */
-    private final List<Integer> deck;
+    private final RemainingSets remainingSets;
 
     /**
      * True iff game should be terminated due to an external event.
@@ -45,61 +49,150 @@ public class Dealer implements Runnable {
      */
     private long reshuffleTime = Long.MAX_VALUE;
 
-    private final Object notifyDealerKey = new Object();
+    /**
+     * The time of the last reshuffle (for the elapsed time display).
+     */
+    private long lastResetTime;
+
+    /**
+     * The time when the timer display should be updated next.
+     */
+    private long nextTickTime = Long.MAX_VALUE;
+
+    /**
+     * The number of milliseconds between timer display updates while the countdown warning is displayed.
+     */
+    private static final long WARNING_TICK_MILLIS = 10;
+
+    /**
+     * The claims posted by players, waiting for the dealer to resolve them (lock-free, many players post into it and
+     * only the dealer thread takes out of it).
+     */
+    private final Queue<Claim> claims = new ConcurrentLinkedQueue<>();
+
+    /**
+     * The claims taken out of the queue by the dealer thread that are not resolved yet, by time of posting.
+     */
+    private final Queue<Claim> claimsToResolve = new PriorityQueue<>(
+            Comparator.comparingLong((Claim claim) -> claim.timeStamp).thenComparingLong(claim -> claim.sequence));
+
+    /**
+     * The number of claims posted so far (breaks ties between claims with the same time stamp).
+     */
+    private final AtomicLong claimSequence = new AtomicLong();
 
-    AtomicInteger timer = new AtomicInteger(60);
-    AtomicLong longTImer ;
-    long lastTime ;
+    /**
+     * Claim to resolution latency statistics (updated by the dealer thread only).
+     */
+    private long claimsResolved;
+    private long totalClaimLatencyNanos;
+    private long maxClaimLatencyNanos;
 
-    List<Integer> cardsOnTable = new ArrayList<>();
+    /**
+     * The thread running the dealer (null before it starts).
+     */
+    private volatile Thread dealerThread;
 
     Thread[] playerThreads ;
 
+    /**
+     * The dealer's decision on a claimed set.
+     */
+    public enum Verdict {
+        /** The set was legal and the player got a point. */
+        POINT,
+        /** The set was not legal and the player was penalized. */
+        PENALTY,
+        /** The cards left the table before the claim was resolved (or the game ended), nothing happened. */
+        DISCARDED
+    }
+
+    /**
+     * A set claimed by a player: the slots the player's tokens were on and the cards in them at the time.
+     */
+    private static class Claim {
+        final int player;
+        final int[] slots;
+        final int[] cards;
+        final long timeStamp;
+        final long sequence;
+        final long submittedNanos;
+        final CompletableFuture<Verdict> verdict = new CompletableFuture<>();
+
+        Claim(int player, int[] slots, int[] cards, long timeStamp, long sequence) {
+            this.player = player;
+            this.slots = slots;
+            this.cards = cards;
+            this.timeStamp = timeStamp;
+            this.sequence = sequence;
+            this.submittedNanos = System.nanoTime();
+        }
+    }
+
+    /**
+     * The random number generator used for shuffling the deck (used by the dealer thread only).
+     */
+    private final SplittableRandom random;
+
+    /**
+     * The random number generators of the players, split from the game's generator (one per player thread).
+     */
+    private final SplittableRandom[] playerRandoms;
 
     public Dealer(Env env, Table table, Player[] players) {
+        this(env, table, players, env.config.seed);
+    }
+
+    /**
+     * Constructor for games with a seed other than the configured one (e.g. simulations of many games).
+     *
+     * @param seed - the seed all the game's random number generators are derived from.
+     */
+    public Dealer(Env env, Table table, Player[] players, long seed) {
         this.env = env;
         this.table = table;
         this.players = players;
-        deck = IntStream.range(0, env.config.deckSize).boxed().collect(Collectors.toList());
-
-        // Initializing long atomic timer
-        longTImer = new AtomicLong(env.config.turnTimeoutMillis);
-        //Initialize token list in table
-        for(int i=0; i<players.length; i++){
-            table.tokensPlaced.add(new ArrayList<>());
-        }
-        //Initialize player threads
-        playerThreads = new Thread[players.length];
-        for(int i=0; i< players.length; i++){
-            playerThreads[i] = new Thread(players[i]);
-        }
-
-        //starting all players
-        for(Thread thread:playerThreads)
-            thread.start();
-
 
+        // split in a fixed order, so the same seed always gives every thread the same generator
+        SplittableRandom game = new SplittableRandom(seed);
+        random = game.split();
+        playerRandoms = new SplittableRandom[players.length];
+        for (int i = 0; i < players.length; i++)
+            playerRandoms[i] = game.split();
+        deck = new Deck(env.config.deckSize);
+        remainingSets = new RemainingSets(env);
     }
+
     /**
      * The dealer thread starts here (main loop for the dealer thread).
      */
     @Override
     public void run() {
+        dealerThread = Thread.currentThread();
         env.logger.log(Level.INFO, "Thread " + Thread.currentThread().getName() + " starting.");
-        lastTime = System.currentTimeMillis();
-        while (!shouldFinish()) {
-            placeCardsOnTable();
-
-            //Initialize AI players
-
 
+        // the players are created after the dealer, so their threads can only be started here
+        playerThreads = new Thread[players.length];
+        for (int i = 0; i < players.length; i++) {
+            playerThreads[i] = Threads.newThread(env, players[i], "player-" + i);
+            playerThreads[i].start();
+        }
 
-            //sleep, update timer display, remove and place new cards.
+        while (!shouldFinish()) {
+            env.events.record(EventLog.Type.RESHUFFLE, -1, -1, -1);
+            deck.shuffle(random);
+            placeCardsOnTable();
+            updateTimerDisplay(true);
             timerLoop();
             updateTimerDisplay(false);
             removeAllCardsFromTable();
         }
+        terminate = true;
         announceWinners();
+        terminatePlayers();
+        if (claimsResolved > 0)
+            env.logger.log(Level.INFO, "claims resolved: " + claimsResolved + ", average latency: "
+                    + averageClaimLatencyNanos() / 1000 + "us, max latency: " + maxClaimLatencyNanos / 1000 + "us.");
         env.logger.log(Level.INFO, "Thread " + Thread.currentThread().getName() + " terminated.");
     }
 
@@ -107,16 +200,11 @@ public class Dealer implements Runnable {
      * The inner loop of the dealer thread that runs as long as the countdown did not time out.
      */
     private void timerLoop() {
-        while (!terminate && System.currentTimeMillis() < reshuffleTime) {
+        while (!shouldFinish() && System.currentTimeMillis() < reshuffleTime) {
             sleepUntilWokenOrTimeout();
             updateTimerDisplay(false);
             removeCardsFromTable();
-            if(longTImer.get() < 1) {
-                longTImer.set(env.config.turnTimeoutMillis);
-                removeAllCardsFromTable();
-                placeCardsOnTable();
-
-            }
+            placeCardsOnTable();
         }
     }
 
@@ -124,7 +212,26 @@ public class Dealer implements Runnable {
      * Called when the game should be terminated due to an external event.
      */
     public void terminate() {
-        // TODO implement
+        terminate = true;
+        LockSupport.unpark(dealerThread);
+    }
+
+    /**
+     * Terminates the player threads (in reverse order of creation) and waits for them to finish.
+     */
+    private void terminatePlayers() {
+        for (int i = players.length - 1; i >= 0; i--) {
+            players[i].terminate();
+            try {
+                playerThreads[i].join();
+            } catch (InterruptedException ignored) {}
+        }
+        // release anyone still waiting for a verdict
+        Claim claim;
+        while ((claim = claims.poll()) != null)
+            claimsToResolve.add(claim);
+        while ((claim = claimsToResolve.poll()) != null)
+            claim.verdict.complete(Verdict.DISCARDED);
     }
 
     /**
@@ -133,65 +240,79 @@ public class Dealer implements Runnable {
      * @return true iff the game should be finished.
      */
     private boolean shouldFinish() {
-        return terminate || env.util.findSets(deck, 1).size() == 0; //TODO: add condition that the set has no sets as well
+        return terminate || !remainingSets.hasSet();
     }
 
     /**
-     * Checks cards should be removed from the table and removes them.
+     * Removes the cards of a legal set from the table (and from the game).
      */
     private void removeCardsFromTable(int[] cards) {
-        // TODO implement
-
-        for(int i=0; i<3; i++){
-            table.removeCard(table.cardToSlot[cards[i]]);
-            table.placeCard(deck.remove(0),table.cardToSlot[cards[i]] );
-
+        for (int card : cards) {
+            table.removeCard(table.cardToSlot[card]);
+            remainingSets.discard(card);
         }
     }
-    private void removeCardsFromTable() {
 
-        // TODO implement
+    /**
+     * Checks cards should be removed from the table and removes them.
+     */
+    private void removeCardsFromTable() {
+        Claim claim;
+        while ((claim = claimsToResolve.poll()) != null)
+            resolveClaim(claim);
     }
 
     /**
      * Check if any cards can be removed from the deck and placed on the table.
      */
     private void placeCardsOnTable() {
-        Collections.shuffle(deck);
-        System.out.println("cards currently in deck : " );
-        System.out.println(deck);
-        int card;
-        for(int i=0; i<12 && deck.size()>0; i++){
-            card = deck.remove(0);
-            table.placeCard(card, i);
-            cardsOnTable.add(card);
-        }
-        verifyAtLeastOneSetOnTable();
-
+        boolean placed = false;
+        for (int slot = 0; slot < env.config.tableSize && !deck.isEmpty(); slot++)
+            if (table.slotToCard[slot] == Table.EMPTY) {
+                table.placeCard(deck.draw(), slot);
+                placed = true;
+            }
+        if (placed)
+            verifyAtLeastOneSetOnTable();
     }
 
     /**
-     * Sleep for a fixed amount of time or until the thread is awakened for some purpose.
+     * Sleep until a player posts a claim or the timer display needs to be updated.
      */
     private void sleepUntilWokenOrTimeout() {
-        // TODO implement
-        try{
-            sleep(8);
-        }
-        catch (InterruptedException e){
-            System.out.println("Dealer was interrupted while sleeping.");
-        }
+        long timeout = Math.min(nextTickTime, reshuffleTime) - System.currentTimeMillis();
+        // a claim posted after the check unparks the dealer, so the wakeup cannot be lost
+        if (timeout > 0 && claims.isEmpty())
+            LockSupport.parkNanos(this, TimeUnit.MILLISECONDS.toNanos(timeout));
+        Claim claim;
+        while ((claim = claims.poll()) != null)
+            claimsToResolve.add(claim);
     }
 
     /**
      * Reset and/or update the countdown and the countdown display.
      */
     private void updateTimerDisplay(boolean reset) {
-        // TODO implement
-        if(System.currentTimeMillis() - lastTime >9){
-            lastTime=System.currentTimeMillis();
-            longTImer.set(longTImer.get() - 10);
-            env.ui.setCountdown(longTImer.get(),longTImer.get()<10000);
+        long now = System.currentTimeMillis();
+        if (reset) {
+            lastResetTime = now;
+            reshuffleTime = env.config.turnTimeoutMillis > 0 ? now + env.config.turnTimeoutMillis : Long.MAX_VALUE;
+        }
+        if (now < nextTickTime && !reset) return;
+
+        if (env.config.turnTimeoutMillis > 0) {
+            long remaining = Math.max(0, reshuffleTime - now);
+            boolean warn = remaining < env.config.turnTimeoutWarningMillis;
+            env.ui.setCountdown(remaining, warn);
+            // next time the displayed value changes: the next whole second, or the next tick while warning
+            nextTickTime = warn ? now + WARNING_TICK_MILLIS
+                    : Math.min(now + remaining % 1000 + 1, reshuffleTime - env.config.turnTimeoutWarningMillis);
+        } else if (env.config.turnTimeoutMillis == 0) {
+            long elapsed = now - lastResetTime;
+            env.ui.setElapsed(elapsed);
+            nextTickTime = now + 1000 - elapsed % 1000;
+        } else {
+            nextTickTime = Long.MAX_VALUE;
         }
     }
 
@@ -199,95 +320,118 @@ public class Dealer implements Runnable {
      * Returns all the cards from the table to the deck.
      */
     private void removeAllCardsFromTable() {
-        // TODO add remove tokens
-        for (int i = 0; i < 12 ; i++){
-            try{
-                deck.add(table.slotToCard[i]);
-                System.out.println("DEBUG: Added card " + table.slotToCard[i] +" back to the deck");
-                table.removeCard(i);
-                System.out.println("removed card from slot " + i);
-            }
-            catch(Exception e ){
-                System.out.println("No card in slot " + i +" to be removed.");
-            }
+        for (int i = 0; i < env.config.tableSize; i++) {
+            if (table.slotToCard[i] == Table.EMPTY) continue;
+            deck.add(table.slotToCard[i]);
+            table.removeCard(i);
         }
         table.removeAllTokens();
-        for(Player player:players)
-            player.pressedQueue.clear();
+    }
+
+    /**
+     * Returns the random number generator of a player. It must only be used by one of that player's threads.
+     *
+     * @param player - the player id.
+     * @return       - the player's random number generator.
+     */
+    public SplittableRandom randomFor(int player) {
+        return playerRandoms[player];
     }
 
     /**
      * Check who is/are the winner/s and displays them.
      */
     private void announceWinners() {
-        // TODO implement
+        int maxScore = Arrays.stream(players).mapToInt(Player::getScore).max().orElse(0);
+        int[] winners = Arrays.stream(players).filter(player -> player.getScore() == maxScore)
+                .mapToInt(player -> player.id).toArray();
+        env.ui.announceWinner(winners);
     }
 
-    public synchronized void notifyDealer(int playerID, Queue<Integer> keysPressed, long timeStamp){ //TODO : Add timestamp check!
-
-            System.out.println("DEBUG (Dealer) : Player no "+ playerID +" notified dealer of finished set "+ keysPressed);
-
-
-            int[] chosenSlots = convertQueueToSlots(keysPressed);
-            int[] chosenCards = slotsToCards(chosenSlots);
-
-            removeTokens(playerID, chosenSlots);
-
-            if(env.util.testSet(chosenCards)){
-                players[playerID].point();
-                removeCardsFromTable(chosenCards);
-                for(int i=0; i<3 && deck.size()>0 ;i++){
-                    table.placeCard(deck.remove(0),chosenSlots[i]);
-                }
-                verifyAtLeastOneSetOnTable();
+    /**
+     * Posts a set claimed by a player to the dealer. This never blocks: the claim is resolved later by the dealer
+     * thread, in the order of the claims' time stamps.
+     *
+     * @param playerID    - the id of the claiming player.
+     * @param slots       - the slots the player placed tokens on (copied).
+     * @param timeStamp   - the time of the claim.
+     * @return            - a handle completed with the dealer's verdict once the claim is resolved.
+     */
+    public Future<Verdict> notifyDealer(int playerID, int[] slots, long timeStamp){
+        slots = slots.clone();
+        int[] cards = new int[slots.length];
+        for (int i = 0; i < slots.length; i++)
+            cards[i] = table.slotToCard[slots[i]];
 
+        Claim claim = new Claim(playerID, slots, cards, timeStamp, claimSequence.getAndIncrement());
+        if (terminate) {
+            claim.verdict.complete(Verdict.DISCARDED);
+            return claim.verdict;
+        }
+        claims.add(claim);
+        LockSupport.unpark(dealerThread);
+        // the dealer resolves every claim posted before it stops, later ones would never be
+        if (terminate) claim.verdict.complete(Verdict.DISCARDED);
+        return claim.verdict;
+    }
 
+    /**
+     * Resolves a claim on the dealer thread: awards a point and replaces the cards for a legal set, or penalizes the
+     * player otherwise. Claims whose cards left their slots since they were posted are discarded.
+     */
+    private void resolveClaim(Claim claim) {
+        removeTokens(claim.player, claim.slots);
+
+        int[] cards = claim.cards;
+        for (int i = 0; i < cards.length; i++)
+            if (cards[i] == Table.EMPTY || table.cardToSlot[cards[i]] != claim.slots[i]) {
+                claim.verdict.complete(Verdict.DISCARDED);
+                return;
             }
-            else
-                players[playerID].penalty();
-
 
-            notifyAll();
+        if (env.util.testSet(cards)) {
+            players[claim.player].point();
+            recordLatency(claim);
+            claim.verdict.complete(Verdict.POINT);
+            removeCardsFromTable(cards);
+            updateTimerDisplay(true);
+        } else {
+            players[claim.player].penalty();
+            recordLatency(claim);
+            claim.verdict.complete(Verdict.PENALTY);
         }
+    }
 
+    private void recordLatency(Claim claim) {
+        long latency = System.nanoTime() - claim.submittedNanos;
+        claimsResolved++;
+        totalClaimLatencyNanos += latency;
+        maxClaimLatencyNanos = Math.max(maxClaimLatencyNanos, latency);
+    }
 
-
+    /**
+     * @return - the average time (in nanoseconds) from a claim being posted until the dealer's verdict on it.
+     */
+    public long averageClaimLatencyNanos() {
+        return claimsResolved == 0 ? 0 : totalClaimLatencyNanos / claimsResolved;
+    }
 
     private void removeTokens (int playerID, int[] slots){
         for(int slot : slots)
             table.removeToken(playerID, slot);
     }
 
-    private int[] convertQueueToSlots(Queue<Integer> keysPressed){
-        int[] slots = new int[3];
-
-        for(int i=0; i<3; i++)
-            slots[i] = keysPressed.remove();
-
-        return slots;
-
-
-
-        }
-    private int[] slotsToCards(int[] slots){
-        int[] cards = new int[3];
-        for(int i=0; i<3; i++)
-            cards[i] = table.slotToCard[slots[i]];
-
-        return cards;
-    }
-
+    /**
+     * Deals the table again until there is a legal set on it (as long as one can still be formed).
+     */
     public void verifyAtLeastOneSetOnTable(){
-        if(env.util.findSets(cardsOnTable,0).size()==0) {
-            System.out.println("DEALER : No sets found on the table. Dealing again...");
+        while (!terminate && !table.hasSet() && remainingSets.hasSet()) {
+            // no sets found on the table, deal again
+            env.events.record(EventLog.Type.RESHUFFLE, -1, -1, -1);
             removeAllCardsFromTable();
-            placeCardsOnTable();
+            deck.shuffle(random);
+            for (int slot = 0; slot < env.config.tableSize && !deck.isEmpty(); slot++)
+                table.placeCard(deck.draw(), slot);
         }
     }
-
-
-
-    }
-
-
-
+}
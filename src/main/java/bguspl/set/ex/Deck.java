@@ -0,0 +1,82 @@
+package bguspl.set.ex;
+
+import java.util.SplittableRandom;
+
+/**
+ * The dealer's deck: a stack of card ids kept in a primitive array.
+ * Cards are drawn from and returned to the top of the stack in O(1), and the deck is shuffled in place.
+ *
+ * @inv 0 <= size() <= capacity
+ */
+public class Deck {
+
+    /**
+     * The cards in the deck (only the first size entries are in use, the top of the deck is the last one).
+     */
+    private final int[] cards;
+
+    /**
+     * The number of cards in the deck.
+     */
+    private int size;
+
+    /**
+     * Creates a deck holding all the cards with ids 0 to deckSize - 1.
+     *
+     * @param deckSize - the number of cards in the full deck.
+     */
+    public Deck(int deckSize) {
+        cards = new int[deckSize];
+        for (int card = 0; card < deckSize; card++)
+            cards[card] = card;
+        size = deckSize;
+    }
+
+    /**
+     * @return - the number of cards in the deck.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return - true iff there are no cards left in the deck.
+     */
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Removes the card on the top of the deck.
+     *
+     * @return - the card id.
+     * @pre - !isEmpty()
+     */
+    public int draw() {
+        if (size == 0) throw new IllegalStateException("the deck is empty");
+        return cards[--size];
+    }
+
+    /**
+     * Puts a card back on the top of the deck.
+     *
+     * @param card - the card id.
+     */
+    public void add(int card) {
+        cards[size++] = card;
+    }
+
+    /**
+     * Shuffles the cards in the deck in place (Fisher-Yates).
+     *
+     * @param random - the random number generator to shuffle with.
+     */
+    public void shuffle(SplittableRandom random) {
+        for (int i = size - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            int card = cards[i];
+            cards[i] = cards[j];
+            cards[j] = card;
+        }
+    }
+}
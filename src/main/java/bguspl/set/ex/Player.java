@@ -1,12 +1,16 @@
 package bguspl.set.ex;
 
-import java.util.ArrayList;
-import java.util.LinkedList;
-import java.util.Queue;
-import java.util.Random;
+import java.util.SplittableRandom;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
 import java.util.logging.Level;
 
 import bguspl.set.Env;
+import bguspl.set.EventLog;
+import bguspl.set.Threads;
 
 /**
  * This class manages the players' threads and data
@@ -56,9 +60,28 @@ public class Player implements Runnable {
      */
     private int score;
 
-    Queue<Integer> pressedQueue = new LinkedList<>();
     Dealer dealer;
 
+    /**
+     * The key presses (slots) waiting to be handled by the player thread.
+     */
+    private final BlockingQueue<Integer> actions;
+
+    /**
+     * The random number generator of the computer player (used by the AI thread only).
+     */
+    private SplittableRandom random;
+
+    /**
+     * The strategy generating the key presses of a computer player (null for a human player).
+     */
+    private final PlayerStrategy strategy;
+
+    /**
+     * The number of key presses handled (or dropped) by the player thread.
+     */
+    private volatile long keyPressesHandled;
+
     /**
      * The class constructor.
      *
@@ -74,6 +97,8 @@ public class Player implements Runnable {
         this.id = id;
         this.human = human;
         this.dealer = dealer;
+        actions = new ArrayBlockingQueue<>(env.config.featureSize);
+        strategy = human ? null : PlayerStrategy.of(env.config.computerStrategy(id - env.config.humanPlayers));
     }
 
     /**
@@ -83,11 +108,14 @@ public class Player implements Runnable {
     public void run() {
         playerThread = Thread.currentThread();
         env.logger.log(Level.INFO, "Thread " + Thread.currentThread().getName() + "starting.");
-        System.out.println( "Thread " + Thread.currentThread().getName() + "starting.");
         if (!human) createArtificialIntelligence();
 
         while (!terminate) {
-            // TODO implement main player loop
+            try {
+                handleKey(actions.take());
+                keyPressesHandled++;
+                if (aiThread != null) LockSupport.unpark(aiThread);
+            } catch (InterruptedException ignored) {}
         }
         if (!human) try {
             aiThread.join();
@@ -97,41 +125,27 @@ public class Player implements Runnable {
     }
 
     /**
-     * Creates an additional thread for an AI (computer) player. The main loop of this thread repeatedly generates
-     * key presses. If the queue of key presses is full, the thread waits until it is not full.
+     * Creates an additional thread for an AI (computer) player. The main loop of this thread asks the player's strategy
+     * for key presses, makes them and waits until the player thread handled them all (so the strategy always sees the
+     * outcome of its previous presses). If the queue of key presses is full, the thread waits until it is not full.
      */
     private void createArtificialIntelligence() {
-        // note: this is a very, very smart AI (!)
-        aiThread = new Thread(() -> {
+        random = dealer.randomFor(id);
+        aiThread = Threads.newThread(env, () -> {
             env.logger.log(Level.INFO, "Thread " + Thread.currentThread().getName() + " starting.");
-            System.out.println("Thread " + Thread.currentThread().getName() + " starting.");
-            // pool of possible slots initialization
-            int[] slots = new int[12];
-            for(int i=0; i<12; i++)
-                slots[i]=i;
-
-            // after randomized tries, the AI will try to place a valid set, if present.
-            int tryNumber = 0;
-            int randomizedTriesToPlaceCorrectSet = randomInRange(2, slots.length);
-
-            // Simulated presses queue
-            Queue<Integer> keysSimulated = new LinkedList<>();
-
-
-
+            long keyPressesMade = 0;
             while (!terminate) {
-
-                keyPressed(slots[randomInRange(0,slots.length)]);
-
-
-
-                // TODO implement player key press simulator
-//                try {
-//                    synchronized (this) {
-//                        wait(10);
-//                    }
-//                } catch (InterruptedException ignored) {
-//                }
+                try {
+                    for (int slot : strategy.nextPresses(table, id, random)) {
+                        // blocks while the player thread has featureSize presses waiting (e.g. while frozen)
+                        actions.put(slot);
+                        keyPressesMade++;
+                        if (env.config.computerKeyPressDelayMillis > 0)
+                            Thread.sleep(env.config.computerKeyPressDelayMillis);
+                    }
+                    while (keyPressesHandled < keyPressesMade && !terminate)
+                        LockSupport.parkNanos(this, TimeUnit.MILLISECONDS.toNanos(10));
+                } catch (InterruptedException ignored) {}
             }
             env.logger.log(Level.INFO, "Thread " + Thread.currentThread().getName() + " terminated.");
         }, "computer-" + id);
@@ -142,43 +156,49 @@ public class Player implements Runnable {
      * Called when the game should be terminated due to an external event.
      */
     public void terminate() {
-        // TODO implement
+        terminate = true;
+        if (aiThread != null) aiThread.interrupt();
+        if (playerThread != null) playerThread.interrupt();
     }
 
     /**
-     * This method is called when a key is pressed.
+     * This method is called when a key is pressed. The key press is handed to the player thread, or dropped if the
+     * player still has featureSize key presses waiting to be handled.
      *
      * @param slot - the slot corresponding to the key pressed.
      */
     public void keyPressed(int slot) {
+        actions.offer(slot);
+    }
 
-        if (pressedQueue.size() < 3) {
-            if (!pressedQueue.contains(slot)) { //Adds Token
-                pressedQueue.add(slot);
-                table.tokensPlaced.get(id).add(slot);
-                table.placeToken(id, slot);
-            } else {// Removes Token
-                table.tokensPlaced.get(id).remove(table.tokensPlaced.get(id).indexOf(slot));
-                pressedQueue.remove(slot);
-                table.removeToken(id, slot);
-
-
-            }
-        }
-        // TODO : add wakeup dealer and check if set is valid.
-
-        if (pressedQueue.size() == 3){
-            table.tokensPlaced.get(id).clear();
-            dealer.notifyDealer(id, pressedQueue, System.currentTimeMillis());
-
-
+    /**
+     * Handles a key press on the player thread: toggles the player's token on the slot, and once the player has
+     * featureSize tokens on the table, claims the set and waits for the dealer's verdict.
+     *
+     * @param slot - the slot corresponding to the key pressed.
+     */
+    private void handleKey(int slot) {
+        if (table.slotToCard[slot] == Table.EMPTY) return;
+
+        // the player's tokens live in the table only, where the dealer also removes them (with the cards under them)
+        if (!table.removeToken(id, slot) && table.tokenCount(id) < env.config.featureSize)
+            table.placeToken(id, slot);
+
+        int[] slots = table.tokenSlots(id);
+        if (slots.length == env.config.featureSize) {
+            try {
+                Dealer.Verdict verdict = dealer.notifyDealer(id, slots, System.currentTimeMillis()).get();
+                if (verdict == Dealer.Verdict.POINT)
+                    freeze(env.config.pointFreezeMillis);
+                else if (verdict == Dealer.Verdict.PENALTY)
+                    freeze(env.config.penaltyFreezeMillis);
+            } catch (InterruptedException | ExecutionException ignored) {}
+            // key presses made while waiting for the verdict or frozen are ignored
+            while (actions.poll() != null)
+                keyPressesHandled++;
         }
     }
 
-
-
-
-
     /**
      * Award a point to a player and perform other related actions.
      *
@@ -186,32 +206,50 @@ public class Player implements Runnable {
      * @post - the player's score is updated in the ui.
      */
     public void point() {
-        // TODO implement
-
         int ignored = table.countCards(); // this part is just for demonstration in the unit tests
         env.ui.setScore(id, ++score);
-
-        System.out.println("Player " + id +": I got a point!");
+        env.events.record(EventLog.Type.POINT, id, -1, -1);
     }
 
     /**
      * Penalize a player and perform other related actions.
      */
     public void penalty() {
-        // TODO implement
-
-        System.out.println("Player " + id +": I got a penalty :(");
+        env.events.record(EventLog.Type.PENALTY, id, -1, -1);
     }
 
-    public int getScore() {
-        return score;
+    /**
+     * Freezes the player (i.e. the player thread does not handle key presses) and displays the remaining time.
+     *
+     * @param millis - the freeze time in milliseconds.
+     */
+    private void freeze(long millis) {
+        long end = System.currentTimeMillis() + millis;
+        for (long left = millis; left > 0 && !terminate; left = end - System.currentTimeMillis()) {
+            env.ui.setFreeze(id, left);
+            try {
+                Thread.sleep(Math.min(left, 1000));
+            } catch (InterruptedException ignored) {}
+        }
+        env.ui.setFreeze(id, 0);
     }
 
-    private int randomInRange(int min, int max){
-
-        return min + (int) (Math.random() * ((max - min) + 1));
+    /**
+     * @return - the name of the strategy generating the player's key presses ("human" for human players).
+     */
+    public String strategyName() {
+        return human ? "human" : strategy.name();
+    }
 
+    /**
+     * @return - the number of key presses the player thread handled (including the ones it ignored).
+     */
+    public long keyPresses() {
+        return keyPressesHandled;
+    }
 
+    public int getScore() {
+        return score;
     }
 
 }
@@ -0,0 +1,56 @@
+package bguspl.set.ex;
+
+import java.util.SplittableRandom;
+
+/**
+ * Decides the key presses of a computer player.
+ * The strategy is called on the computer player's thread, each time the key presses it chose before were handled by
+ * the player (including the dealer's verdict and any freeze), so it always sees the table as it was left by them.
+ */
+public interface PlayerStrategy {
+
+    /**
+     * No key presses (look at the table again).
+     */
+    int[] NO_PRESSES = new int[0];
+
+    /**
+     * @return - the name of the strategy (as configured, e.g. "skilled:1500").
+     */
+    String name();
+
+    /**
+     * Chooses the next key presses. May take time (e.g. to simulate looking for a set).
+     *
+     * @param table  - the table.
+     * @param player - the id of the player.
+     * @param random - the player's random number generator.
+     * @return       - the slots to press, in order (NO_PRESSES to look at the table again later).
+     * @throws InterruptedException - if the player was terminated while the strategy was waiting.
+     */
+    int[] nextPresses(Table table, int player, SplittableRandom random) throws InterruptedException;
+
+    /**
+     * Creates a strategy from its configured name (see config.properties).
+     *
+     * @param name - random, skilled:N (N being the milliseconds it takes to find a set) or optimal.
+     * @return     - the strategy.
+     * @throws IllegalArgumentException - if there is no such strategy.
+     */
+    static PlayerStrategy of(String name) {
+        String[] parts = name.trim().toLowerCase().split(":", 2);
+        switch (parts[0]) {
+            case "random":
+                return new RandomStrategy();
+            case "optimal":
+                return new SkilledStrategy(0);
+            case "skilled":
+                try {
+                    if (parts.length == 2) return new SkilledStrategy(Long.parseLong(parts[1].trim()));
+                } catch (NumberFormatException ignored) {}
+                throw new IllegalArgumentException("expected skilled:milliseconds, got " + name);
+            default:
+                throw new IllegalArgumentException("unknown computer player strategy: " + name);
+        }
+    }
+}
@@ -0,0 +1,19 @@
+package bguspl.set.ex;
+
+import java.util.SplittableRandom;
+
+/**
+ * Presses a random slot at a time (and so finds sets by chance).
+ */
+class RandomStrategy implements PlayerStrategy {
+
+    @Override
+    public String name() {
+        return "random";
+    }
+
+    @Override
+    public int[] nextPresses(Table table, int player, SplittableRandom random) {
+        return new int[]{random.nextInt(table.slotToCard.length)};
+    }
+}
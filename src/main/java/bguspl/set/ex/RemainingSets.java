@@ -0,0 +1,112 @@
+package bguspl.set.ex;
+
+import bguspl.set.Env;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * This class keeps track of the cards that are still in the game (i.e. in the deck or on the table) and of the
+ * number of legal sets that can still be formed from them.
+ *
+ * @inv 0 <= count() <= env.util.setsCount()
+ */
+public class RemainingSets {
+
+    /**
+     * The game environment object.
+     */
+    private final Env env;
+
+    /**
+     * One bit per card: set iff the card is still in the game.
+     */
+    private final long[] inGame;
+
+    /**
+     * The number of legal sets whose cards are all still in the game (-1 if the sets of the deck are not indexed).
+     */
+    private int remaining;
+
+    /**
+     * The class constructor. All the cards of the deck start in the game.
+     *
+     * @param env - the game environment object.
+     */
+    public RemainingSets(Env env) {
+        this.env = env;
+        inGame = new long[(env.config.deckSize + Long.SIZE - 1) / Long.SIZE];
+        for (int card = 0; card < env.config.deckSize; ++card)
+            inGame[card >>> 6] |= 1L << card;
+        remaining = env.util.setsCount();
+    }
+
+    /**
+     * @param card - the card id.
+     * @return     - true iff the card is still in the deck or on the table.
+     */
+    public synchronized boolean inGame(int card) {
+        return (inGame[card >>> 6] & (1L << card)) != 0;
+    }
+
+    /**
+     * Takes a card out of the game (e.g. after it was part of a legal set claimed by a player).
+     *
+     * @param card - the card id.
+     * @post - inGame(card) == false.
+     */
+    public synchronized void discard(int card) {
+        if (!inGame(card)) return;
+        if (remaining >= 0)
+            for (int set : env.util.setsOf(card))
+                if (othersInGame(set, card))
+                    --remaining;
+        inGame[card >>> 6] &= ~(1L << card);
+    }
+
+    /**
+     * Returns a card that was taken out of the game back into it.
+     *
+     * @param card - the card id.
+     * @post - inGame(card) == true.
+     */
+    public synchronized void restore(int card) {
+        if (inGame(card)) return;
+        if (remaining >= 0)
+            for (int set : env.util.setsOf(card))
+                if (othersInGame(set, card))
+                    ++remaining;
+        inGame[card >>> 6] |= 1L << card;
+    }
+
+    /**
+     * @return - the number of legal sets that can still be formed from the cards in the game.
+     */
+    public synchronized int count() {
+        if (remaining >= 0) return remaining;
+        return env.util.findSets(cardsInGame(), Integer.MAX_VALUE).size();
+    }
+
+    /**
+     * @return - true iff at least one legal set can still be formed from the cards in the game.
+     */
+    public synchronized boolean hasSet() {
+        if (remaining >= 0) return remaining > 0;
+        return !env.util.findSets(cardsInGame(), 1).isEmpty();
+    }
+
+    private boolean othersInGame(int set, int card) {
+        for (int other : env.util.setCards(set))
+            if (other != card && !inGame(other))
+                return false;
+        return true;
+    }
+
+    private List<Integer> cardsInGame() {
+        List<Integer> cards = new ArrayList<>();
+        for (int card = 0; card < env.config.deckSize; ++card)
+            if (inGame(card))
+                cards.add(card);
+        return cards;
+    }
+}
@@ -0,0 +1,78 @@
+package bguspl.set.ex;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+
+/**
+ * Looks at the table for a while and then claims one of the sets on it. The time it takes to find a set is drawn
+ * uniformly between half and one and a half times the configured time; with no time at all the strategy is optimal
+ * (it claims a set as soon as there is one, using the table's index of the sets on it).
+ */
+class SkilledStrategy implements PlayerStrategy {
+
+    /**
+     * How long to wait before looking at a table without sets again.
+     */
+    private static final long LOOK_AGAIN_MILLIS = 10;
+
+    /**
+     * The average number of milliseconds it takes to find a set.
+     */
+    private final long findMillis;
+
+    /**
+     * @param findMillis - the average number of milliseconds it takes to find a set (0 for the optimal strategy).
+     */
+    SkilledStrategy(long findMillis) {
+        this.findMillis = Math.max(0, findMillis);
+    }
+
+    @Override
+    public String name() {
+        return findMillis == 0 ? "optimal" : "skilled:" + findMillis;
+    }
+
+    @Override
+    public int[] nextPresses(Table table, int player, SplittableRandom random) throws InterruptedException {
+        List<int[]> sets = table.currentSets();
+        if (sets.isEmpty()) {
+            Thread.sleep(LOOK_AGAIN_MILLIS);
+            return NO_PRESSES;
+        }
+        int[] set = sets.get(random.nextInt(sets.size()));
+        if (findMillis > 0)
+            Thread.sleep(findMillis / 2 + random.nextLong(findMillis + 1));
+        return claim(table, player, set);
+    }
+
+    /**
+     * @param set - the cards to claim.
+     * @return    - the presses that leave the player's tokens on exactly the slots of the cards: first the ones taking
+     *              back tokens on other slots, then the ones placing the missing tokens (NO_PRESSES if a card is no
+     *              longer on the table).
+     */
+    static int[] claim(Table table, int player, int[] set) {
+        int[] slots = new int[set.length];
+        for (int i = 0; i < set.length; i++) {
+            slots[i] = table.cardToSlot[set[i]];
+            if (slots[i] == Table.EMPTY) return NO_PRESSES;
+        }
+
+        int[] presses = new int[table.slotToCard.length + set.length];
+        int count = 0;
+        for (int slot = 0; slot < table.slotToCard.length; slot++)
+            if (table.hasToken(player, slot) && !contains(slots, slot))
+                presses[count++] = slot;
+        for (int slot : slots)
+            if (!table.hasToken(player, slot))
+                presses[count++] = slot;
+        return Arrays.copyOf(presses, count);
+    }
+
+    private static boolean contains(int[] slots, int slot) {
+        for (int s : slots)
+            if (s == slot) return true;
+        return false;
+    }
+}
@@ -1,11 +1,13 @@
 package bguspl.set.ex;
 
 import bguspl.set.Env;
+import bguspl.set.EventLog;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.BitSet;
 import java.util.List;
-import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLongArray;
 import java.util.stream.Collectors;
 
 /**
@@ -21,29 +23,93 @@ public class Table {
     private final Env env;
 
     /**
-     * Mapping between a slot and the card placed in it (null if none).
+     * The value of an empty entry in slotToCard and cardToSlot.
      */
-    protected final Integer[] slotToCard; // card per slot (if any)
+    public static final int EMPTY = -1;
 
     /**
-     * Mapping between a card and the slot it is in (null if none).
+     * Mapping between a slot and the card placed in it (EMPTY if none).
      */
-    protected final Integer[] cardToSlot; // slot per card (if any)
+    protected final int[] slotToCard; // card per slot (if any)
 
-    public List<List<Integer>> tokensPlaced = new ArrayList<>();
+    /**
+     * Mapping between a card and the slot it is in (EMPTY if none).
+     */
+    protected final int[] cardToSlot; // slot per card (if any)
+
+    /**
+     * The slots each player placed tokens on: bit (slot % 64) of word (player * tokenWords + slot / 64) is set iff the
+     * player has a token on the slot.
+     */
+    private final AtomicLongArray playerTokens;
+
+    /**
+     * The players that placed tokens on each slot: bit (player % 64) of word (slot * playerWords + player / 64) is set
+     * iff the player has a token on the slot.
+     */
+    private final AtomicLongArray slotPlayers;
+
+    /**
+     * The number of words per player in playerTokens and per slot in slotPlayers.
+     */
+    private final int tokenWords;
+    private final int playerWords;
+
+    /**
+     * The lock of each player's tokens. A token is placed or removed by updating both playerTokens and slotPlayers,
+     * so the updates of a player's tokens are serialized (the player thread and the dealer may both update them), and
+     * the two masks always agree. Reading the tokens takes no lock.
+     */
+    private final Object[] tokenLocks;
+
+    /**
+     * The number of cards of each legal set that are currently on the table (indexed by set id, null if the sets of
+     * the deck are not indexed).
+     */
+    private final byte[] setCardsOnTable;
+
+    /**
+     * The ids of the sets whose cards are all on the table (only the first setsOnTableCount entries are in use).
+     */
+    private final int[] setsOnTable;
+
+    /**
+     * The position of each set id in setsOnTable (valid only while the set is on the table).
+     */
+    private final int[] setPosition;
+
+    /**
+     * The number of sets whose cards are all on the table.
+     */
+    private int setsOnTableCount;
 
     /**
      * Constructor for testing.
      *
      * @param env        - the game environment objects.
-     * @param slotToCard - mapping between a slot and the card placed in it (null if none).
-     * @param cardToSlot - mapping between a card and the slot it is in (null if none).
+     * @param slotToCard - mapping between a slot and the card placed in it (EMPTY if none).
+     * @param cardToSlot - mapping between a card and the slot it is in (EMPTY if none).
      */
-    public Table(Env env, Integer[] slotToCard, Integer[] cardToSlot) {
+    public Table(Env env, int[] slotToCard, int[] cardToSlot) {
 
         this.env = env;
         this.slotToCard = slotToCard;
         this.cardToSlot = cardToSlot;
+
+        int sets = env.util.setsCount();
+        setCardsOnTable = sets < 0 ? null : new byte[sets];
+        setsOnTable = sets < 0 ? null : new int[sets];
+        setPosition = sets < 0 ? null : new int[sets];
+        for (int card : slotToCard)
+            if (card != EMPTY)
+                addToIndex(card);
+
+        tokenWords = (env.config.tableSize + 63) >>> 6;
+        playerWords = (env.config.players + 63) >>> 6;
+        playerTokens = new AtomicLongArray(env.config.players * tokenWords);
+        slotPlayers = new AtomicLongArray(env.config.tableSize * playerWords);
+        tokenLocks = new Object[env.config.players];
+        Arrays.setAll(tokenLocks, player -> new Object());
     }
 
     /**
@@ -53,20 +119,98 @@ public class Table {
      */
     public Table(Env env) {
 
-        this(env, new Integer[env.config.tableSize], new Integer[env.config.deckSize]);
+        this(env, emptyMapping(env.config.tableSize), emptyMapping(env.config.deckSize));
+    }
+
+    private static int[] emptyMapping(int size) {
+        int[] mapping = new int[size];
+        Arrays.fill(mapping, EMPTY);
+        return mapping;
     }
 
     /**
      * This method prints all possible legal sets of cards that are currently on the table.
      */
     public void hints() {
-        List<Integer> deck = Arrays.stream(slotToCard).filter(Objects::nonNull).collect(Collectors.toList());
-        env.util.findSets(deck, Integer.MAX_VALUE).forEach(set -> {
-            StringBuilder sb = new StringBuilder().append("Hint: Set found: ");
-            List<Integer> slots = Arrays.stream(set).mapToObj(card -> cardToSlot[card]).sorted().collect(Collectors.toList());
-            int[][] features = env.util.cardsToFeatures(set);
-            System.out.println(sb.append("slots: ").append(slots).append(" features: ").append(Arrays.deepToString(features)));
-        });
+        if (setCardsOnTable != null) {
+            currentSets().forEach(this::printHint);
+            return;
+        }
+        if (env.config.featureSize != 3) {
+            env.util.findSets(cardsOnTable(), Integer.MAX_VALUE).forEach(this::printHint);
+            return;
+        }
+
+        // each set is printed once, from the pair of its two lowest slots
+        for (int first = 0; first < slotToCard.length; ++first)
+            for (int second = first + 1; second < slotToCard.length; ++second) {
+                if (slotToCard[first] == EMPTY || slotToCard[second] == EMPTY) continue;
+                int third = env.util.completeSet(slotToCard[first], slotToCard[second]);
+                if (cardToSlot[third] != EMPTY && cardToSlot[third] > second)
+                    printHint(new int[]{slotToCard[first], slotToCard[second], third});
+            }
+    }
+
+    /**
+     * Checks whether there is at least one legal set on the table.
+     *
+     * @return - true iff the cards on the table contain a legal set.
+     */
+    public synchronized boolean hasSet() {
+        if (setCardsOnTable != null) return setsOnTableCount > 0;
+        return !env.util.findSets(cardsOnTable(), 1).isEmpty();
+    }
+
+    /**
+     * Returns all the legal sets that are currently on the table.
+     * Note: the card arrays may be shared and must not be modified.
+     *
+     * @return - a list of the sets on the table, each one an array of card ids.
+     */
+    public synchronized List<int[]> currentSets() {
+        if (setCardsOnTable == null)
+            return env.util.findSets(cardsOnTable(), Integer.MAX_VALUE);
+        List<int[]> sets = new ArrayList<>(setsOnTableCount);
+        for (int i = 0; i < setsOnTableCount; ++i)
+            sets.add(env.util.setCards(setsOnTable[i]));
+        return sets;
+    }
+
+    private List<Integer> cardsOnTable() {
+        return Arrays.stream(slotToCard).filter(card -> card != EMPTY).boxed().collect(Collectors.toList());
+    }
+
+    /**
+     * Updates the sets index with a card that was put on the table, touching only the sets that include it.
+     */
+    private void addToIndex(int card) {
+        if (setCardsOnTable == null) return;
+        for (int set : env.util.setsOf(card))
+            if (++setCardsOnTable[set] == env.config.featureSize) {
+                setPosition[set] = setsOnTableCount;
+                setsOnTable[setsOnTableCount++] = set;
+            }
+    }
+
+    /**
+     * Updates the sets index with a card that was taken off the table, touching only the sets that include it.
+     */
+    private void removeFromIndex(int card) {
+        if (setCardsOnTable == null) return;
+        for (int set : env.util.setsOf(card))
+            if (setCardsOnTable[set]-- == env.config.featureSize) {
+                // move the last set on the table into the removed set's position
+                int last = setsOnTable[--setsOnTableCount];
+                setsOnTable[setPosition[set]] = last;
+                setPosition[last] = setPosition[set];
+            }
+    }
+
+    private void printHint(int[] set) {
+        StringBuilder sb = new StringBuilder().append("Hint: Set found: ");
+        List<Integer> slots = Arrays.stream(set).mapToObj(card -> cardToSlot[card]).sorted().collect(Collectors.toList());
+        int[][] features = env.util.cardsToFeatures(set);
+        System.out.println(sb.append("slots: ").append(slots).append(" features: ").append(Arrays.deepToString(features)));
     }
 
     /**
@@ -76,8 +220,8 @@ public class Table {
      */
     public int countCards() {
         int cards = 0;
-        for (Integer card : slotToCard)
-            if (card != null)
+        for (int card : slotToCard)
+            if (card != EMPTY)
                 ++cards;
         return cards;
     }
@@ -94,38 +238,67 @@ public class Table {
             Thread.sleep(env.config.tableDelayMillis);
         } catch (InterruptedException ignored) {}
 
-        cardToSlot[card] = slot;
-        slotToCard[slot] = card;
+        synchronized (this) {
+            if (slotToCard[slot] != EMPTY) {
+                cardToSlot[slotToCard[slot]] = EMPTY;
+                removeFromIndex(slotToCard[slot]);
+            }
+            cardToSlot[card] = slot;
+            slotToCard[slot] = card;
+            addToIndex(card);
+        }
+        env.events.record(EventLog.Type.CARD_PLACED, -1, slot, card);
         env.ui.placeCard(card, slot);
-
-
     }
 
     /**
-     * Removes a card from a grid slot on the table.
+     * Removes a card from a grid slot on the table, together with the tokens of all the players on the slot.
      * @param slot - the slot from which to remove the card.
      */
     public void removeCard(int slot) {
         try {
             Thread.sleep(env.config.tableDelayMillis);
-        } catch (InterruptedException ignored) {
-            System.out.println("Table experience an exception when trying to sleep");
-        }
+        } catch (InterruptedException ignored) {}
 
-        // TODO implement
+        int card;
+        synchronized (this) {
+            card = slotToCard[slot];
+            if (card != EMPTY) {
+                cardToSlot[card] = EMPTY;
+                slotToCard[slot] = EMPTY;
+                removeFromIndex(card);
+            }
+        }
+        removeTokens(slot);
+        env.events.record(EventLog.Type.CARD_REMOVED, -1, slot, card);
         env.ui.removeCard(slot);
     }
 
     /**
-     * Places a player token on a grid slot.
+     * Places a player token on a grid slot. No token is placed on an empty slot.
      * @param player - the player the token belongs to.
      * @param slot   - the slot on which to place the token.
+     * @return       - true iff a token was placed.
      */
-    public void placeToken(int player, int slot) {
-        // TODO implement
+    public boolean placeToken(int player, int slot) {
+        synchronized (tokenLocks[player]) {
+            if (!setBit(playerTokens, player * tokenWords + (slot >>> 6), slot)) return false;
+            setBit(slotPlayers, slot * playerWords + (player >>> 6), player);
+            // removeCard empties the slot before it removes the tokens on it, so either it sees this token, or this
+            // sees the empty slot and takes the token back (a token never outlives its card)
+            boolean empty;
+            synchronized (this) {
+                empty = slotToCard[slot] == EMPTY;
+            }
+            if (empty) {
+                clearBit(playerTokens, player * tokenWords + (slot >>> 6), slot);
+                clearBit(slotPlayers, slot * playerWords + (player >>> 6), player);
+                return false;
+            }
+        }
+        env.events.record(EventLog.Type.TOKEN_PLACED, player, slot, -1);
         env.ui.placeToken(player,slot);
-        System.out.println("Table : new tokens list is " +tokensPlaced);
-
+        return true;
     }
 
     /**
@@ -135,27 +308,117 @@ public class Table {
      * @return       - true iff a token was successfully removed.
      */
     public boolean removeToken(int player, int slot) {
-        // TODO implement
+        synchronized (tokenLocks[player]) {
+            if (!clearBit(playerTokens, player * tokenWords + (slot >>> 6), slot)) return false;
+            clearBit(slotPlayers, slot * playerWords + (player >>> 6), player);
+        }
+        env.events.record(EventLog.Type.TOKEN_REMOVED, player, slot, -1);
         env.ui.removeToken(player, slot);
-        System.out.println("Table : new tokens list is " +tokensPlaced);
         return true;
     }
 
-    public void removeAllTokens(){
+    /**
+     * Removes the tokens of all the players from a grid slot.
+     * @param slot - the slot from which to remove the tokens.
+     */
+    public void removeTokens(int slot) {
+        BitSet players = playersOn(slot);
+        for (int player = players.nextSetBit(0); player >= 0; player = players.nextSetBit(player + 1)) {
+            synchronized (tokenLocks[player]) {
+                if (!clearBit(playerTokens, player * tokenWords + (slot >>> 6), slot)) continue;
+                clearBit(slotPlayers, slot * playerWords + (player >>> 6), player);
+            }
+            env.events.record(EventLog.Type.TOKEN_REMOVED, player, slot, -1);
+        }
+        env.ui.removeTokens(slot);
+    }
 
-        for(int i=0; i<tokensPlaced.size(); i++){
-            for(int j=0; j<tokensPlaced.get(i).size(); j++){
-                removeToken(i,tokensPlaced.get(i).get(j));
+    /**
+     * Removes the tokens of all the players from the table.
+     */
+    public void removeAllTokens(){
+        for (int player = 0; player < tokenLocks.length; player++)
+            synchronized (tokenLocks[player]) {
+                for (int word = 0; word < tokenWords; word++) {
+                    // the player's slots are cleared first, and then the player is cleared from exactly those slots
+                    long slots = playerTokens.getAndSet(player * tokenWords + word, 0);
+                    for (; slots != 0; slots &= slots - 1) {
+                        int slot = word * Long.SIZE + Long.numberOfTrailingZeros(slots);
+                        clearBit(slotPlayers, slot * playerWords + (player >>> 6), player);
+                    }
+                }
             }
+        env.ui.removeTokens();
+    }
+
+    /**
+     * @param player - the player id.
+     * @param slot   - the slot.
+     * @return       - true iff the player has a token on the slot.
+     */
+    public boolean hasToken(int player, int slot) {
+        return (playerTokens.get(player * tokenWords + (slot >>> 6)) & (1L << slot)) != 0;
+    }
+
+    /**
+     * @param player - the player id.
+     * @return       - the number of tokens the player has on the table.
+     */
+    public int tokenCount(int player) {
+        int count = 0;
+        for (int word = 0; word < tokenWords; word++)
+            count += Long.bitCount(playerTokens.get(player * tokenWords + word));
+        return count;
+    }
+
+    /**
+     * @param player - the player id.
+     * @return       - the slots the player has tokens on, in increasing order.
+     */
+    public int[] tokenSlots(int player) {
+        long[] words = new long[tokenWords];
+        int count = 0;
+        for (int word = 0; word < tokenWords; word++) {
+            words[word] = playerTokens.get(player * tokenWords + word);
+            count += Long.bitCount(words[word]);
         }
-        clearTokensPlaced();
+        int[] slots = new int[count];
+        int i = 0;
+        for (int word = 0; word < tokenWords; word++)
+            for (long rest = words[word]; rest != 0; rest &= rest - 1)
+                slots[i++] = word * Long.SIZE + Long.numberOfTrailingZeros(rest);
+        return slots;
+    }
 
+    /**
+     * @param slot - the slot.
+     * @return     - the ids of the players that have a token on the slot.
+     */
+    public BitSet playersOn(int slot) {
+        long[] words = new long[playerWords];
+        for (int word = 0; word < playerWords; word++)
+            words[word] = slotPlayers.get(slot * playerWords + word);
+        return BitSet.valueOf(words);
+    }
 
+    /**
+     * Atomically sets bit (bit % 64) of a word.
+     *
+     * @return - true iff the bit was not set before.
+     */
+    private static boolean setBit(AtomicLongArray words, int word, int bit) {
+        long mask = 1L << bit;
+        return (words.getAndAccumulate(word, mask, (current, m) -> current | m) & mask) == 0;
     }
 
-    private void clearTokensPlaced(){
-        for (List<Integer> tokens : tokensPlaced)
-            tokens.clear();
+    /**
+     * Atomically clears bit (bit % 64) of a word.
+     *
+     * @return - true iff the bit was set before.
+     */
+    private static boolean clearBit(AtomicLongArray words, int word, int bit) {
+        long mask = 1L << bit;
+        return (words.getAndAccumulate(word, mask, (current, m) -> current & ~m) & mask) != 0;
     }
 }
 
@@ -0,0 +1,60 @@
+package bguspl.set;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Formatter;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class AsyncLogHandlerTest {
+
+    @TempDir
+    Path dir;
+
+    private final Formatter formatter = new Formatter() {
+        @Override
+        public String format(LogRecord record) {
+            return "[" + record.getLevel() + "] " + record.getMessage() + "\n";
+        }
+    };
+
+    @Test
+    void close_WritesAllRecordsAndTrimsFile() throws IOException {
+        Path file = dir.resolve("game.log");
+        AsyncLogHandler handler = new AsyncLogHandler(file, formatter, 1 << 20, 1000);
+        handler.publish(new LogRecord(Level.INFO, "first"));
+        handler.publish(new LogRecord(Level.WARNING, "second"));
+        handler.flush();
+        handler.publish(new LogRecord(Level.INFO, "third"));
+        handler.close();
+
+        assertEquals(List.of("[INFO] first", "[WARNING] second", "[INFO] third"), Files.readAllLines(file));
+    }
+
+    @Test
+    void publish_RollsOverToNewFiles() throws IOException {
+        Path file = dir.resolve("game.log");
+        AsyncLogHandler handler = new AsyncLogHandler(file, formatter, 1 << 20, Integer.MAX_VALUE);
+        int records = 50000;
+        for (int i = 0; i < records; i++) {
+            handler.publish(new LogRecord(Level.INFO, "record number " + i));
+            if (i % 1000 == 0)
+                handler.flush();
+        }
+        handler.close();
+
+        List<String> lines = new ArrayList<>(Files.readAllLines(file));
+        lines.addAll(Files.readAllLines(dir.resolve("game.1.log")));
+        assertEquals(records, lines.size());
+        for (int i = 0; i < records; i++)
+            assertEquals("[INFO] record number " + i, lines.get(i));
+    }
+}
@@ -0,0 +1,66 @@
+package bguspl.set;
+
+import org.junit.jupiter.api.Test;
+
+import java.awt.image.BufferedImage;
+import java.util.Properties;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+class CardImagesTest {
+
+    private CardImages cardImages(int cacheSize, String... settings) {
+        Properties properties = new Properties();
+        for (int i = 0; i + 1 < settings.length; i += 2)
+            properties.put(settings[i], settings[i + 1]);
+        properties.put("CellWidth", "100");
+        properties.put("CellHeight", "60");
+        properties.put("CardImageCacheSize", Integer.toString(cacheSize));
+        return new CardImages(new UtilImplTest.MockLogger(), new Config(new UtilImplTest.MockLogger(), properties));
+    }
+
+    @Test
+    void intInBaseToPaddedString_MatchesFormat() {
+        for (int base = 2; base <= 10; base++)
+            for (int n = 0; n < 200; n++)
+                for (int padding = 1; padding <= 6; padding++)
+                    assertEquals(String.format("%" + padding + "s", Integer.toString(n, base)).replace(' ', '0'),
+                            CardImages.intInBaseToPaddedString(n, padding, base));
+    }
+
+    @Test
+    void get_ScaledToCellAndCached() {
+        CardImages images = cardImages(128);
+        BufferedImage image = (BufferedImage) images.get(5);
+
+        assertEquals(100, image.getWidth());
+        assertEquals(60, image.getHeight());
+        assertSame(image, images.get(5));
+    }
+
+    @Test
+    void get_EvictsLeastRecentlyUsed() {
+        CardImages images = cardImages(2);
+        Object first = images.get(0);
+        Object second = images.get(1);
+        images.get(0);
+        images.get(2);
+
+        assertSame(first, images.get(0));
+        assertNotSame(second, images.get(1));
+    }
+
+    @Test
+    void get_DrawsCardsWithoutImageFiles() {
+        // 5^5 cards: there are no image files for this deck
+        CardImages images = cardImages(4, "FeatureSize", "5", "FeatureCount", "5");
+        BufferedImage image = (BufferedImage) images.get(3124);
+
+        assertEquals(100, image.getWidth());
+        assertEquals(60, image.getHeight());
+        assertNotEquals(0, image.getRGB(50, 30) >>> 24);
+    }
+}
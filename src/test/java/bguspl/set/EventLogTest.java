@@ -0,0 +1,79 @@
+package bguspl.set;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class EventLogTest {
+
+    @TempDir
+    Path dir;
+
+    private List<String> printed(Path file) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        EventLog.print(file, new PrintStream(out, true));
+        return Arrays.stream(out.toString().split("\\R")).skip(1).collect(Collectors.toList());
+    }
+
+    @Test
+    void record_WrittenInOrderAndFormattedOnRead() throws IOException {
+        Path file = dir.resolve("game.events");
+        EventLog events = new EventLog(new UtilImplTest.MockLogger(), EventLog.Level.ALL, file, 16);
+        events.record(EventLog.Type.CARD_PLACED, -1, 3, 80);
+        events.record(EventLog.Type.TOKEN_PLACED, 1, 3, -1);
+        events.record(EventLog.Type.POINT, 1, -1, -1);
+        events.close();
+
+        List<String> lines = printed(file);
+        assertEquals(3, lines.size());
+        assertTrue(lines.get(0).endsWith("] CARD_PLACED slot 3 card 80"));
+        assertTrue(lines.get(1).endsWith("] TOKEN_PLACED player 1 slot 3"));
+        assertTrue(lines.get(2).endsWith("] POINT player 1"));
+    }
+
+    @Test
+    void record_SkipsEventsAboveLevel() throws IOException {
+        Path file = dir.resolve("game.events");
+        EventLog events = new EventLog(new UtilImplTest.MockLogger(), EventLog.Level.GAME, file, 16);
+        events.record(EventLog.Type.KEY_PRESSED, 0, 1, -1);
+        events.record(EventLog.Type.PENALTY, 0, -1, -1);
+        events.close();
+
+        List<String> lines = printed(file);
+        assertEquals(1, lines.size());
+        assertTrue(lines.get(0).endsWith("] PENALTY player 0"));
+    }
+
+    @Test
+    void record_ConcurrentWritersLoseNothingButDrops() throws Exception {
+        Path file = dir.resolve("game.events");
+        EventLog events = new EventLog(new UtilImplTest.MockLogger(), EventLog.Level.ALL, file, 64);
+        int threads = 4, perThread = 20000;
+        Thread[] writers = new Thread[threads];
+        for (int t = 0; t < threads; t++) {
+            int player = t;
+            writers[t] = new Thread(() -> {
+                for (int i = 0; i < perThread; i++)
+                    events.record(EventLog.Type.TOKEN_PLACED, player, i % 12, -1);
+            });
+            writers[t].start();
+        }
+        for (Thread writer : writers)
+            writer.join();
+        events.close();
+
+        long records = (Files.size(file) - 2 * Long.BYTES) / EventLog.RECORD_BYTES;
+        assertEquals((long) threads * perThread, records + events.dropped());
+    }
+}
@@ -0,0 +1,95 @@
+package bguspl.set;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Properties;
+import java.util.Random;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class FeatureMatrixTest {
+
+    private static UtilImpl util(int featureSize, int featureCount) {
+        Properties properties = new Properties();
+        properties.put("FeatureSize", Integer.toString(featureSize));
+        properties.put("FeatureCount", Integer.toString(featureCount));
+        return new UtilImpl(new Config(new UtilImplTest.MockLogger(), properties));
+    }
+
+    /**
+     * @return - a random legal set: in each feature the cards either share a random value or take a random order of
+     *           all the values (but never all the same in every feature, which would repeat a card).
+     */
+    private static int[] randomSet(Random random, int featureSize, int featureCount) {
+        int[] cards = new int[featureSize];
+        int differ = 1 + random.nextInt((1 << featureCount) - 1);
+        for (int feature = 0; feature < featureCount; ++feature) {
+            int[] values = random.ints(0, featureSize).distinct().limit(featureSize).toArray();
+            boolean different = (differ >> feature & 1) != 0;
+            for (int i = 0; i < featureSize; ++i)
+                cards[i] = cards[i] * featureSize + (different ? values[i] : values[0]);
+        }
+        return cards;
+    }
+
+    @Test
+    void feature_MatchesCardToFeatures() {
+        UtilImpl util = util(3, 4);
+        FeatureMatrix matrix = util.featureMatrix();
+        for (int card = 0; card < 81; ++card) {
+            int[] features = util.cardToFeatures(card);
+            for (int i = 0; i < features.length; ++i)
+                assertEquals(features[i], matrix.feature(card, i));
+        }
+    }
+
+    @Test
+    void validateSets_MatchesTestSet() {
+        Random random = new Random(3);
+        // 3^4 uses the sum check, 4^3 and 5^3 the bit mask check; 1000 candidates span several blocks
+        for (int[] shape : new int[][]{{3, 4}, {4, 3}, {5, 3}}) {
+            UtilImpl util = util(shape[0], shape[1]);
+            int k = shape[0], count = 1000, deckSize = (int) Math.pow(k, shape[1]);
+            int[] candidates = new int[count * k];
+            for (int i = 0; i < count; ++i) {
+                // every fourth candidate is made a set, so both outcomes are covered
+                int[] cards = i % 4 == 0 ? randomSet(random, k, shape[1])
+                        : random.ints(0, deckSize).distinct().limit(k).toArray();
+                System.arraycopy(cards, 0, candidates, i * k, k);
+            }
+
+            boolean[] valid = new boolean[count];
+            int sets = util.featureMatrix().validateSets(candidates, count, valid);
+            int expected = 0;
+            for (int i = 0; i < count; ++i) {
+                boolean set = util.testSet(Arrays.copyOfRange(candidates, i * k, i * k + k));
+                assertEquals(set, valid[i]);
+                if (set) ++expected;
+            }
+            assertEquals(expected, sets);
+        }
+    }
+
+    @Test
+    void countSets_MatchesFindSets() {
+        Random random = new Random(8);
+        for (int[] shape : new int[][]{{3, 4}, {3, 5}, {4, 3}}) {
+            UtilImpl util = util(shape[0], shape[1]);
+            int deckSize = (int) Math.pow(shape[0], shape[1]);
+            for (int i = 0; i < 200; ++i) {
+                int[] cards = random.ints(0, deckSize).distinct().limit(1 + random.nextInt(Math.min(deckSize, 40)))
+                        .toArray();
+                int length = random.nextInt(cards.length + 1);
+                int expected = util.findSets(Arrays.stream(cards, 0, length).boxed().collect(Collectors.toList()),
+                        Integer.MAX_VALUE).size();
+                assertEquals(expected, util.featureMatrix().countSets(cards, length));
+            }
+            int[] deck = new int[deckSize];
+            Arrays.setAll(deck, card -> card);
+            assertEquals(util.findSets(Arrays.stream(deck).boxed().collect(Collectors.toList()), Integer.MAX_VALUE)
+                    .size(), util.featureMatrix().countSets(deck, deckSize));
+        }
+    }
+}
@@ -0,0 +1,139 @@
+package bguspl.set;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SetSolverTest {
+
+    private static Config config(int featureSize, int featureCount) {
+        Properties properties = new Properties();
+        properties.put("FeatureSize", Integer.toString(featureSize));
+        properties.put("FeatureCount", Integer.toString(featureCount));
+        return new Config(new UtilImplTest.MockLogger(), properties);
+    }
+
+    /**
+     * @return - a random legal set: in every feature the cards either share a value or take all the values.
+     */
+    private static int[] randomSet(Config config, Random random) {
+        int k = config.featureSize;
+        int[] set = new int[k];
+        boolean distinct = false;
+        for (int feature = 0; feature < config.featureCount; ++feature) {
+            boolean same = random.nextBoolean() && (distinct || feature < config.featureCount - 1);
+            distinct |= !same;
+            List<Integer> values = IntStream.range(0, k).boxed().collect(Collectors.toList());
+            Collections.shuffle(values, random);
+            for (int i = 0; i < k; ++i)
+                set[i] = set[i] * k + (same ? values.get(0) : values.get(i));
+        }
+        return set;
+    }
+
+    /**
+     * Every combination of featureSize cards checked with testSet.
+     */
+    private static Set<String> bruteForceSets(Util util, int[] cards, int length, int k) {
+        Set<String> sets = new TreeSet<>();
+        addSets(util, cards, length, 0, new int[k], 0, sets);
+        return sets;
+    }
+
+    private static void addSets(Util util, int[] cards, int length, int from, int[] chosen, int depth,
+                                Set<String> sets) {
+        if (depth == chosen.length) {
+            if (util.testSet(chosen)) sets.add(Arrays.toString(chosen));
+            return;
+        }
+        for (int i = from; i < length; ++i) {
+            chosen[depth] = cards[i];
+            addSets(util, cards, length, i + 1, chosen, depth + 1, sets);
+        }
+    }
+
+    @Test
+    void queries_MatchBruteForce() {
+        Random random = new Random(11);
+        // the standard 81 card deck (sets of 3), and decks of 64, 625 and 3125 cards (sets of 4 and 5)
+        for (int[] shape : new int[][]{{3, 4}, {4, 3}, {5, 4}, {5, 5}}) {
+            Config config = config(shape[0], shape[1]);
+            UtilImpl util = new UtilImpl(config);
+            SetSolver solver = new SetSolver(config, util);
+            int k = config.featureSize;
+            int[] cards = new int[config.deckSize];
+
+            for (int i = 0; i < 100; ++i) {
+                // 12, 15 and 18 cards, as on the table, with a few sets planted among them
+                int size = 12 + 3 * (i % 3);
+                long[] mask = solver.newMask();
+                for (int planted = i % 4; planted > 0; --planted)
+                    for (int card : randomSet(config, random))
+                        mask[card >>> 6] |= 1L << card;
+                for (int card : random.ints(0, config.deckSize).distinct().limit(size).toArray())
+                    mask[card >>> 6] |= 1L << card;
+                int length = solver.cards(mask, cards);
+                Set<String> expected = bruteForceSets(util, cards, length, k);
+                if (i % 4 != 0) assertFalse(expected.isEmpty());
+
+                assertEquals(expected.size(), solver.countSets(mask));
+
+                List<int[]> each = new ArrayList<>();
+                solver.forEachSet(mask, new int[k], set -> each.add(set.clone()));
+                assertEquals(expected, each.stream().map(Arrays::toString).collect(Collectors.toSet()));
+                assertEquals(expected.size(), each.size());
+
+                int[] first = new int[k];
+                assertEquals(!expected.isEmpty(), solver.firstSet(mask, first));
+                if (!expected.isEmpty())
+                    assertTrue(expected.contains(Arrays.toString(first)));
+            }
+        }
+    }
+
+    @Test
+    void countSets_InParallelMatchesOneByOne() {
+        Random random = new Random(12);
+        Config config = config(3, 4);
+        SetSolver solver = new SetSolver(config, new UtilImpl(config));
+        long[][] masks = new long[10_000][];
+        for (int i = 0; i < masks.length; ++i)
+            masks[i] = solver.mask(random.ints(0, config.deckSize).distinct().limit(12 + 3 * (i % 3)).toArray());
+        int[] counts = new int[masks.length];
+
+        solver.countSets(masks, counts);
+        for (int i = 0; i < masks.length; ++i)
+            assertEquals(solver.countSets(masks[i]), counts[i]);
+    }
+
+    @Test
+    void mask_RoundTripsAndRejectsCardsOutsideTheDeck() {
+        Config config = config(3, 4);
+        SetSolver solver = new SetSolver(config, new UtilImpl(config));
+        long[] mask = solver.mask(80, 3, 64);
+        assertArrayEquals(new long[]{1L << 3, 0b1_0000_0000_0000_0001L}, mask);
+
+        int[] cards = new int[3];
+        assertEquals(3, solver.cards(mask, cards));
+        assertArrayEquals(new int[]{3, 64, 80}, cards);
+        assertEquals(2, solver.newMask().length);
+        assertFalse(solver.firstSet(solver.newMask(), cards));
+        assertThrows(IllegalArgumentException.class, () -> solver.mask(81));
+        assertThrows(IllegalArgumentException.class, () -> solver.mask(-1));
+    }
+}
@@ -0,0 +1,207 @@
+package bguspl.set;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.logging.Logger;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.LongStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class UtilImplTest {
+
+    Config config;
+    UtilImpl util;
+
+    @BeforeEach
+    void setUp() {
+        Properties properties = new Properties();
+        properties.put("FeatureSize", "3");
+        properties.put("FeatureCount", "4");
+        config = new Config(new MockLogger(), properties);
+        util = new UtilImpl(config);
+    }
+
+    /**
+     * Straightforward feature by feature check, used as a reference.
+     */
+    private boolean isSet(int a, int b, int c) {
+        int[][] features = util.cardsToFeatures(new int[]{a, b, c});
+        for (int i = 0; i < config.featureCount; ++i) {
+            boolean same = features[0][i] == features[1][i] && features[1][i] == features[2][i];
+            boolean different = features[0][i] != features[1][i] && features[1][i] != features[2][i] && features[0][i] != features[2][i];
+            if (!same && !different) return false;
+        }
+        return true;
+    }
+
+    private Set<String> bruteForceSets(List<Integer> cards) {
+        Set<String> sets = new TreeSet<>();
+        for (int i = 0; i < cards.size(); ++i)
+            for (int j = i + 1; j < cards.size(); ++j)
+                for (int k = j + 1; k < cards.size(); ++k)
+                    if (isSet(cards.get(i), cards.get(j), cards.get(k))) {
+                        int[] set = {cards.get(i), cards.get(j), cards.get(k)};
+                        Arrays.sort(set);
+                        sets.add(Arrays.toString(set));
+                    }
+        return sets;
+    }
+
+    @Test
+    void completeSet_FormsASetWithEveryPair() {
+        for (int a = 0; a < config.deckSize; ++a)
+            for (int b = 0; b < config.deckSize; ++b) {
+                if (a == b) continue;
+                int c = util.completeSet(a, b);
+                assertTrue(c != a && c != b);
+                assertTrue(isSet(a, b, c));
+                assertEquals(c, util.completeSet(b, a));
+            }
+    }
+
+    @Test
+    void testSet_MatchesFeatureCheck() {
+        Random random = new Random(7);
+        for (int i = 0; i < 10000; ++i) {
+            int[] cards = random.ints(3, 0, config.deckSize).toArray();
+            assertEquals(isSet(cards[0], cards[1], cards[2]), util.testSet(cards));
+        }
+        assertFalse(util.testSet(new int[]{0, 1, 3}));
+        assertTrue(util.testSet(new int[]{0, 1, 2}));
+    }
+
+    @Test
+    void findSets_WholeDeck() {
+        List<Integer> deck = IntStream.range(0, config.deckSize).boxed().collect(Collectors.toList());
+        assertEquals(1080, util.findSets(deck, Integer.MAX_VALUE).size());
+    }
+
+    @Test
+    void setIndex_CoversAllSets() {
+        assertEquals(1080, util.setsCount());
+        for (int set = 0; set < util.setsCount(); ++set) {
+            int[] cards = util.setCards(set);
+            assertTrue(cards[0] < cards[1] && cards[1] < cards[2]);
+            assertTrue(isSet(cards[0], cards[1], cards[2]));
+        }
+        for (int card = 0; card < config.deckSize; ++card) {
+            assertEquals((config.deckSize - 1) / 2, util.setsOf(card).length);
+            for (int set : util.setsOf(card))
+                assertTrue(Arrays.binarySearch(util.setCards(set), card) >= 0);
+        }
+    }
+
+    @Test
+    void findSets_MatchesBruteForceOnRandomTables() {
+        Random random = new Random(42);
+        List<Integer> deck = IntStream.range(0, config.deckSize).boxed().collect(Collectors.toList());
+        for (int i = 0; i < 200; ++i) {
+            Collections.shuffle(deck, random);
+            List<Integer> table = new ArrayList<>(deck.subList(0, 3 + random.nextInt(18)));
+            Set<String> found = util.findSets(table, Integer.MAX_VALUE).stream()
+                    .map(Arrays::toString).collect(Collectors.toCollection(TreeSet::new));
+            assertEquals(bruteForceSets(table), found);
+            assertEquals(Math.min(1, found.size()), util.findSets(table, 1).size());
+        }
+    }
+
+    /**
+     * Reference check for sets of any size: in every feature the values are all equal or all distinct.
+     */
+    private static boolean isSet(UtilImpl util, int[] cards) {
+        int[][] features = util.cardsToFeatures(cards);
+        for (int i = 0; i < features[0].length; ++i) {
+            int feature = i;
+            long distinct = Arrays.stream(features).mapToInt(card -> card[feature]).distinct().count();
+            if (distinct != 1 && distinct != cards.length) return false;
+        }
+        return true;
+    }
+
+    private static void addSets(UtilImpl util, List<Integer> cards, int from, int[] chosen, int depth, Set<String> sets) {
+        if (depth == chosen.length) {
+            if (isSet(util, chosen)) {
+                int[] set = chosen.clone();
+                Arrays.sort(set);
+                sets.add(Arrays.toString(set));
+            }
+            return;
+        }
+        for (int i = from; i < cards.size(); ++i) {
+            chosen[depth] = cards.get(i);
+            addSets(util, cards, i + 1, chosen, depth + 1, sets);
+        }
+    }
+
+    @Test
+    void largerSets_MatchBruteForce() {
+        Random random = new Random(5);
+        // (featureSize, featureCount): 4^3 = 64 and 5^3 = 125 cards, with sets of 4 and 5 cards
+        for (int[] shape : new int[][]{{4, 3}, {5, 3}}) {
+            Properties properties = new Properties();
+            properties.put("FeatureSize", Integer.toString(shape[0]));
+            properties.put("FeatureCount", Integer.toString(shape[1]));
+            Config config = new Config(new MockLogger(), properties);
+            UtilImpl util = new UtilImpl(config);
+            int k = config.featureSize;
+
+            // every feature is the same (k values) or all different (k! orders) in an ordered set
+            long factorial = LongStream.rangeClosed(1, k).reduce(1, (a, b) -> a * b);
+            long expected = ((long) Math.pow(k + factorial, config.featureCount) - config.deckSize) / factorial;
+            List<Integer> deck = IntStream.range(0, config.deckSize).boxed().collect(Collectors.toList());
+            assertEquals(expected, util.findSets(deck, Integer.MAX_VALUE).size());
+
+            for (int i = 0; i < 2000; ++i) {
+                int[] cards = random.ints(0, config.deckSize).distinct().limit(k).toArray();
+                assertEquals(isSet(util, cards), util.testSet(cards));
+            }
+
+            for (int i = 0; i < 50; ++i) {
+                Collections.shuffle(deck, random);
+                List<Integer> table = new ArrayList<>(deck.subList(0, k + random.nextInt(12)));
+                Set<String> sets = new TreeSet<>();
+                addSets(util, table, 0, new int[k], 0, sets);
+                Set<String> found = util.findSets(table, Integer.MAX_VALUE).stream()
+                        .map(Arrays::toString).collect(Collectors.toCollection(TreeSet::new));
+                assertEquals(sets, found);
+                assertEquals(Math.min(1, found.size()), util.findSets(table, 1).size());
+            }
+        }
+    }
+
+    @Test
+    void findSets_NothingForNonPositiveCount() {
+        // sets of 3 (pair scan), 4 (search) and 2 cards (combinations)
+        for (int[] shape : new int[][]{{3, 4}, {4, 3}, {2, 4}}) {
+            Properties properties = new Properties();
+            properties.put("FeatureSize", Integer.toString(shape[0]));
+            properties.put("FeatureCount", Integer.toString(shape[1]));
+            Config config = new Config(new MockLogger(), properties);
+            UtilImpl util = new UtilImpl(config);
+            List<Integer> deck = IntStream.range(0, config.deckSize).boxed().collect(Collectors.toList());
+
+            assertEquals(1, util.findSets(deck, 1).size());
+            assertTrue(util.findSets(deck, 0).isEmpty());
+            assertTrue(util.findSets(deck, -1).isEmpty());
+        }
+    }
+
+    static class MockLogger extends Logger {
+        protected MockLogger() {
+            super("", null);
+        }
+    }
+}
@@ -0,0 +1,268 @@
+package bguspl.set.ex;
+
+import bguspl.set.Config;
+import bguspl.set.Env;
+import bguspl.set.UtilImpl;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Properties;
+import java.util.SplittableRandom;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class DealerTest {
+
+    Config config;
+    TableTest.MockLogger logger;
+
+    /**
+     * The game started by startGame (null if none).
+     */
+    GatedUserInterface ui;
+    Table table;
+    Player[] players;
+    Dealer dealer;
+    Thread dealerThread;
+
+    /**
+     * Records the cards the dealer places on the table, in order.
+     */
+    static class RecordingUserInterface extends TableTest.MockUserInterface {
+        final List<Integer> placed = new ArrayList<>();
+
+        @Override
+        public synchronized void placeCard(int card, int slot) {
+            placed.add(card);
+        }
+
+        synchronized int[] placed(int count) {
+            return placed.stream().limit(count).mapToInt(Integer::intValue).toArray();
+        }
+
+        synchronized int placedCount() {
+            return placed.size();
+        }
+    }
+
+    /**
+     * Holds the dealer thread on its first timer display update (right after the first deal), until released.
+     */
+    static class GatedUserInterface extends TableTest.MockUserInterface {
+        final AtomicBoolean armed = new AtomicBoolean(true);
+        final CountDownLatch entered = new CountDownLatch(1);
+        final CountDownLatch released = new CountDownLatch(1);
+
+        @Override
+        public void setElapsed(long millies) {
+            if (!armed.getAndSet(false)) return;
+            entered.countDown();
+            try {
+                released.await();
+            } catch (InterruptedException ignored) {}
+        }
+    }
+
+    @BeforeEach
+    void setUp() {
+        logger = new TableTest.MockLogger();
+        config = new Config(logger, properties("-1"));
+    }
+
+    private static Properties properties(String turnTimeoutSeconds) {
+        Properties properties = new Properties();
+        properties.put("Rows", "3");
+        properties.put("Columns", "4");
+        properties.put("TableDelaySeconds", "0");
+        properties.put("TurnTimeoutSeconds", turnTimeoutSeconds);
+        properties.put("HumanPlayers", "2");
+        properties.put("ComputerPlayers", "0");
+        return properties;
+    }
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        if (dealer == null) return;
+        ui.released.countDown();
+        dealer.terminate();
+        dealerThread.join();
+    }
+
+    private Env env(TableTest.MockUserInterface ui) {
+        return new Env(logger, config, ui, new UtilImpl(config));
+    }
+
+    private Dealer dealer(Env env, Table table, long seed) {
+        players = new Player[config.players];
+        Dealer dealer = new Dealer(env, table, players, seed);
+        for (int i = 0; i < players.length; i++)
+            players[i] = new Player(env, dealer, table, i, true);
+        return dealer;
+    }
+
+    /**
+     * Runs a game until the first cards are dealt, and returns them in the order they were placed on the table.
+     */
+    private int[] firstDeal(long seed) throws InterruptedException {
+        RecordingUserInterface ui = new RecordingUserInterface();
+        Env env = env(ui);
+        Dealer dealer = dealer(env, new Table(env), seed);
+        Thread thread = new Thread(dealer, "dealer");
+        thread.start();
+        long deadline = System.currentTimeMillis() + 5000;
+        while (ui.placedCount() < config.tableSize && System.currentTimeMillis() < deadline)
+            Thread.sleep(1);
+        dealer.terminate();
+        thread.join();
+        return ui.placed(config.tableSize);
+    }
+
+    @Test
+    void seed_SameSeedDealsTheSameCards() throws InterruptedException {
+        int[] cards = firstDeal(7);
+        assertEquals(config.tableSize, cards.length);
+        assertArrayEquals(cards, firstDeal(7));
+        assertFalse(Arrays.equals(cards, firstDeal(8)));
+    }
+
+    @Test
+    void randomFor_SameSeedGivesThePlayersTheSameSequences() {
+        Env env = env(new RecordingUserInterface());
+        Table table = new Table(env);
+        Dealer dealer = dealer(env, table, 7), again = dealer(env, table, 7), other = dealer(env, table, 8);
+
+        for (int player = 0; player < config.players; player++) {
+            SplittableRandom random = dealer.randomFor(player);
+            long[] sequence = random.longs(10).toArray();
+            assertArrayEquals(sequence, again.randomFor(player).longs(10).toArray());
+            assertFalse(Arrays.equals(sequence, other.randomFor(player).longs(10).toArray()));
+        }
+        // the players do not share a generator
+        assertFalse(Arrays.equals(dealer(env, table, 7).randomFor(0).longs(10).toArray(),
+                dealer(env, table, 7).randomFor(1).longs(10).toArray()));
+    }
+
+    /**
+     * Starts a game and waits until the dealer dealt the table and is held (see GatedUserInterface), so the claims
+     * posted until the gate is released are all resolved together.
+     */
+    private void startGame() throws InterruptedException {
+        // with no turn timeout the elapsed time is displayed, the first time right after the first deal
+        config = new Config(logger, properties("0"));
+        ui = new GatedUserInterface();
+        Env env = env(ui);
+        table = new Table(env);
+        dealer = dealer(env, table, 1);
+        dealerThread = new Thread(dealer, "dealer");
+        dealerThread.start();
+        assertTrue(ui.entered.await(5, TimeUnit.SECONDS));
+    }
+
+    /**
+     * @return - the slots of a legal set on the table.
+     */
+    private int[] slotsOfASet() {
+        return Arrays.stream(table.currentSets().get(0)).map(card -> table.cardToSlot[card]).toArray();
+    }
+
+    /**
+     * @return - the slots of three cards on the table that do not form a legal set.
+     */
+    private int[] slotsOfANonSet() {
+        UtilImpl util = new UtilImpl(config);
+        for (int a = 0; a < config.tableSize; a++)
+            for (int b = a + 1; b < config.tableSize; b++)
+                for (int c = b + 1; c < config.tableSize; c++)
+                    if (!util.testSet(new int[]{table.slotToCard[a], table.slotToCard[b], table.slotToCard[c]}))
+                        return new int[]{a, b, c};
+        throw new AssertionError("every three cards on the table form a set");
+    }
+
+    private static Dealer.Verdict verdict(Future<Dealer.Verdict> verdict) throws Exception {
+        return verdict.get(5, TimeUnit.SECONDS);
+    }
+
+    @Test
+    void claims_ResolvedInTimeStampOrder() throws Exception {
+        startGame();
+        int[] set = slotsOfASet();
+        // posted first, but claimed later
+        Future<Dealer.Verdict> late = dealer.notifyDealer(1, set, 20);
+        Future<Dealer.Verdict> early = dealer.notifyDealer(0, set, 10);
+        ui.released.countDown();
+
+        assertEquals(Dealer.Verdict.POINT, verdict(early));
+        // the cards were replaced by the time the later claim was resolved
+        assertEquals(Dealer.Verdict.DISCARDED, verdict(late));
+        assertEquals(1, players[0].getScore());
+        assertEquals(0, players[1].getScore());
+    }
+
+    @Test
+    void claims_WithTheSameTimeStampResolvedInPostingOrder() throws Exception {
+        startGame();
+        int[] set = slotsOfASet();
+        Future<Dealer.Verdict> first = dealer.notifyDealer(1, set, 10);
+        Future<Dealer.Verdict> second = dealer.notifyDealer(0, set, 10);
+        ui.released.countDown();
+
+        assertEquals(Dealer.Verdict.POINT, verdict(first));
+        assertEquals(Dealer.Verdict.DISCARDED, verdict(second));
+    }
+
+    @Test
+    void claims_DiscardedWhenTheCardsLeftTheirSlots() throws Exception {
+        startGame();
+        int[] set = slotsOfASet();
+        Future<Dealer.Verdict> verdict = dealer.notifyDealer(0, set, 10);
+
+        // swap a card of the set with a card outside it before the dealer gets to the claim
+        int other = 0;
+        while (other == set[0] || other == set[1] || other == set[2])
+            other++;
+        int card = table.slotToCard[set[0]], otherCard = table.slotToCard[other];
+        table.removeCard(set[0]);
+        table.removeCard(other);
+        table.placeCard(card, other);
+        table.placeCard(otherCard, set[0]);
+        ui.released.countDown();
+
+        assertEquals(Dealer.Verdict.DISCARDED, verdict(verdict));
+        assertEquals(0, players[0].getScore());
+    }
+
+    @Test
+    void claims_LegalSetScoresAndIllegalSetIsPenalized() throws Exception {
+        startGame();
+        Future<Dealer.Verdict> illegal = dealer.notifyDealer(1, slotsOfANonSet(), 10);
+        Future<Dealer.Verdict> legal = dealer.notifyDealer(0, slotsOfASet(), 20);
+        ui.released.countDown();
+
+        assertEquals(Dealer.Verdict.PENALTY, verdict(illegal));
+        assertEquals(Dealer.Verdict.POINT, verdict(legal));
+        assertEquals(1, players[0].getScore());
+        assertEquals(0, players[1].getScore());
+    }
+
+    @Test
+    void claims_DiscardedAfterTerminate() throws Exception {
+        Env env = env(new RecordingUserInterface());
+        Dealer dealer = dealer(env, new Table(env), 1);
+        dealer.terminate();
+
+        Future<Dealer.Verdict> verdict = dealer.notifyDealer(0, new int[]{0, 1, 2}, 10);
+        assertTrue(verdict.isDone());
+        assertEquals(Dealer.Verdict.DISCARDED, verdict(verdict));
+    }
+}
@@ -0,0 +1,79 @@
+package bguspl.set.ex;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class DeckTest {
+
+    private static int[] drawAll(Deck deck) {
+        int[] cards = new int[deck.size()];
+        for (int i = 0; i < cards.length; i++)
+            cards[i] = deck.draw();
+        return cards;
+    }
+
+    @Test
+    void draw_TakesTheCardsFromTheTop() {
+        Deck deck = new Deck(5);
+        assertEquals(5, deck.size());
+
+        assertArrayEquals(new int[]{4, 3, 2, 1, 0}, drawAll(deck));
+        assertTrue(deck.isEmpty());
+    }
+
+    @Test
+    void draw_EmptyDeckThrows() {
+        Deck deck = new Deck(1);
+        deck.draw();
+
+        assertThrows(IllegalStateException.class, deck::draw);
+        assertThrows(IllegalStateException.class, () -> new Deck(0).draw());
+    }
+
+    @Test
+    void add_PutsTheCardBackOnTop() {
+        Deck deck = new Deck(3);
+        int card = deck.draw();
+        deck.draw();
+        deck.add(card);
+
+        assertEquals(2, deck.size());
+        assertFalse(deck.isEmpty());
+        assertEquals(card, deck.draw());
+        assertEquals(0, deck.draw());
+    }
+
+    @Test
+    void shuffle_SameSeedGivesTheSamePermutation() {
+        Deck deck = new Deck(81), again = new Deck(81);
+        deck.shuffle(new SplittableRandom(42));
+        again.shuffle(new SplittableRandom(42));
+
+        int[] cards = drawAll(deck);
+        assertArrayEquals(cards, drawAll(again));
+        assertFalse(Arrays.equals(IntStream.range(0, 81).map(i -> 80 - i).toArray(), cards));
+        Arrays.sort(cards);
+        assertArrayEquals(IntStream.range(0, 81).toArray(), cards);
+    }
+
+    @Test
+    void shuffle_OnlyShufflesTheCardsInTheDeck() {
+        Deck deck = new Deck(10);
+        deck.draw();
+        deck.draw();
+        deck.shuffle(new SplittableRandom(7));
+
+        int[] cards = drawAll(deck);
+        Arrays.sort(cards);
+        assertArrayEquals(IntStream.range(0, 8).toArray(), cards);
+    }
+}
@@ -0,0 +1,93 @@
+package bguspl.set.ex;
+
+import bguspl.set.Config;
+import bguspl.set.Env;
+import bguspl.set.UtilImpl;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Properties;
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PlayerStrategyTest {
+
+    Table table;
+    UtilImpl util;
+    Config config;
+
+    @BeforeEach
+    void setUp() {
+        Properties properties = new Properties();
+        properties.put("Rows", "3");
+        properties.put("Columns", "4");
+        properties.put("TableDelaySeconds", "0");
+        properties.put("ComputerPlayers", "2");
+        properties.put("ComputerStrategies", "skilled:500, optimal");
+        TableTest.MockLogger logger = new TableTest.MockLogger();
+        config = new Config(logger, properties);
+        util = new UtilImpl(config);
+        table = new Table(new Env(logger, config, new TableTest.MockUserInterface(), util));
+    }
+
+    @Test
+    void of_ParsesConfiguredNames() {
+        assertEquals("skilled:500", PlayerStrategy.of(config.computerStrategy(0)).name());
+        assertEquals("optimal", PlayerStrategy.of(config.computerStrategy(1)).name());
+        assertEquals("random", PlayerStrategy.of(config.computerStrategy(2)).name());
+        assertThrows(IllegalArgumentException.class, () -> PlayerStrategy.of("skilled"));
+        assertThrows(IllegalArgumentException.class, () -> PlayerStrategy.of("clever"));
+    }
+
+    @Test
+    void random_PressesSlotsOnTheTable() throws InterruptedException {
+        SplittableRandom random = new SplittableRandom(1);
+        PlayerStrategy strategy = PlayerStrategy.of("random");
+        for (int i = 0; i < 100; i++) {
+            int[] presses = strategy.nextPresses(table, 0, random);
+            assertEquals(1, presses.length);
+            assertTrue(presses[0] >= 0 && presses[0] < config.tableSize);
+        }
+    }
+
+    @Test
+    void optimal_ClaimsASetOnTheTable() throws InterruptedException {
+        // cards 0, 1 and 2 form a set, 3 and 4 do not complete it
+        for (int card = 0; card < 5; card++)
+            table.placeCard(card, card);
+        PlayerStrategy strategy = PlayerStrategy.of("optimal");
+
+        int[] presses = strategy.nextPresses(table, 0, new SplittableRandom(1));
+        Arrays.sort(presses);
+        assertArrayEquals(new int[]{0, 1, 2}, presses);
+
+        // tokens that are not on the set are taken back first, and tokens already on the set are kept
+        table.placeToken(0, 4);
+        table.placeToken(0, 1);
+        assertArrayEquals(new int[]{4, 0, 2}, strategy.nextPresses(table, 0, new SplittableRandom(1)));
+    }
+
+    @Test
+    void skilled_WaitsBeforeClaiming() throws InterruptedException {
+        for (int card = 0; card < 3; card++)
+            table.placeCard(card, card);
+        long start = System.currentTimeMillis();
+        int[] presses = PlayerStrategy.of("skilled:200").nextPresses(table, 0, new SplittableRandom(1));
+
+        assertTrue(System.currentTimeMillis() - start >= 100);
+        Arrays.sort(presses);
+        assertArrayEquals(new int[]{0, 1, 2}, presses);
+    }
+
+    @Test
+    void skilled_LooksAgainWithoutASet() throws InterruptedException {
+        table.placeCard(0, 0);
+        table.placeCard(1, 1);
+        assertEquals(0, PlayerStrategy.of("optimal").nextPresses(table, 0, new SplittableRandom(1)).length);
+    }
+}
@@ -0,0 +1,96 @@
+package bguspl.set.ex;
+
+import bguspl.set.Config;
+import bguspl.set.Env;
+import bguspl.set.UtilImpl;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+import java.util.Random;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RemainingSetsTest {
+
+    Env env;
+    RemainingSets remainingSets;
+
+    @BeforeEach
+    void setUp() {
+        TableTest.MockLogger logger = new TableTest.MockLogger();
+        Config config = new Config(logger, new Properties());
+        env = new Env(logger, config, new TableTest.MockUserInterface(), new UtilImpl(config));
+        remainingSets = new RemainingSets(env);
+    }
+
+    private void assertMatchesBruteForce(List<Integer> deck, List<Integer> table) {
+        List<Integer> cards = new ArrayList<>(deck);
+        cards.addAll(table);
+        int expected = env.util.findSets(cards, Integer.MAX_VALUE).size();
+        assertEquals(expected, remainingSets.count());
+        assertEquals(expected > 0, remainingSets.hasSet());
+        for (int card : cards)
+            assertTrue(remainingSets.inGame(card));
+    }
+
+    @Test
+    void count_FullDeck() {
+        assertEquals(1080, remainingSets.count());
+        assertTrue(remainingSets.hasSet());
+    }
+
+    @Test
+    void discard_ThenRestore() {
+        remainingSets.discard(0);
+        assertFalse(remainingSets.inGame(0));
+        assertEquals(1080 - 40, remainingSets.count());
+
+        remainingSets.discard(0);
+        assertEquals(1080 - 40, remainingSets.count());
+
+        remainingSets.restore(0);
+        assertEquals(1080, remainingSets.count());
+    }
+
+    @Test
+    void count_MatchesBruteForceOnRandomGames() {
+        Random random = new Random(3);
+        for (int game = 0; game < 20; ++game) {
+            remainingSets = new RemainingSets(env);
+            List<Integer> deck = IntStream.range(0, env.config.deckSize).boxed().collect(Collectors.toList());
+            List<Integer> table = new ArrayList<>();
+            Collections.shuffle(deck, random);
+
+            while (remainingSets.hasSet()) {
+                // deal up to a full table
+                while (table.size() < env.config.tableSize && !deck.isEmpty())
+                    table.add(deck.remove(deck.size() - 1));
+                assertMatchesBruteForce(deck, table);
+
+                List<int[]> sets = env.util.findSets(table, Integer.MAX_VALUE);
+                if (sets.isEmpty() || random.nextInt(8) == 0) {
+                    // no set on the table (or the turn timed out): reshuffle the table back into the deck
+                    deck.addAll(table);
+                    table.clear();
+                    Collections.shuffle(deck, random);
+                } else {
+                    // a player claimed a legal set: its cards leave the game
+                    for (int card : sets.get(random.nextInt(sets.size()))) {
+                        table.remove((Integer) card);
+                        remainingSets.discard(card);
+                    }
+                }
+                assertMatchesBruteForce(deck, table);
+            }
+            assertTrue(env.util.findSets(deck, 1).isEmpty() && env.util.findSets(table, 1).isEmpty());
+        }
+    }
+}
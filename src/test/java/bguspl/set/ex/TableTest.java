@@ -4,20 +4,32 @@ import bguspl.set.Config;
 import bguspl.set.Env;
 import bguspl.set.UserInterface;
 import bguspl.set.Util;
+import bguspl.set.UtilImpl;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
 import java.util.List;
 import java.util.Properties;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.BrokenBarrierException;
+import java.util.concurrent.CyclicBarrier;
 import java.util.logging.Logger;
+import java.util.stream.Collectors;
 
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 class TableTest {
 
     Table table;
-    private Integer[] slotToCard;
-    private Integer[] cardToSlot;
+    private int[] slotToCard;
+    private int[] cardToSlot;
 
     @BeforeEach
     void setUp() {
@@ -32,8 +44,10 @@ class TableTest {
         properties.put("PlayerKeys2", "85,73,79,80");
         MockLogger logger = new MockLogger();
         Config config = new Config(logger, properties);
-        slotToCard = new Integer[config.tableSize];
-        cardToSlot = new Integer[config.deckSize];
+        slotToCard = new int[config.tableSize];
+        cardToSlot = new int[config.deckSize];
+        Arrays.fill(slotToCard, Table.EMPTY);
+        Arrays.fill(cardToSlot, Table.EMPTY);
 
         Env env = new Env(logger, config, new MockUserInterface(), new MockUtil());
         table = new Table(env, slotToCard, cardToSlot);
@@ -58,8 +72,8 @@ class TableTest {
     private void placeSomeCardsAndAssert() {
         table.placeCard(8, 2);
 
-        assertEquals(8, (int) slotToCard[2]);
-        assertEquals(2, (int) cardToSlot[8]);
+        assertEquals(8, slotToCard[2]);
+        assertEquals(2, cardToSlot[8]);
     }
 
     @Test
@@ -95,6 +109,148 @@ class TableTest {
         placeSomeCardsAndAssert();
     }
 
+    @Test
+    void removeCard_ClearsMappings() {
+        fillSomeSlots();
+        table.removeCard(1);
+
+        assertEquals(Table.EMPTY, slotToCard[1]);
+        assertEquals(Table.EMPTY, cardToSlot[3]);
+        assertEquals(1, table.countCards());
+    }
+
+    @Test
+    void removeCard_RemovesTheTokensOfEveryPlayer() {
+        fillAllSlots();
+        table.placeToken(0, 1);
+        table.placeToken(0, 2);
+        table.placeToken(1, 1);
+        table.removeCard(1);
+
+        assertTrue(table.playersOn(1).isEmpty());
+        assertFalse(table.hasToken(1, 1));
+        assertArrayEquals(new int[]{2}, table.tokenSlots(0));
+        assertArrayEquals(new int[0], table.tokenSlots(1));
+    }
+
+    @Test
+    void removeAllTokens_KeepsBothViewsConsistentWhilePlayersPlaceTokens() throws InterruptedException {
+        fillAllSlots();
+        Thread player = new Thread(() -> {
+            for (int i = 0; i < 100_000; i++) {
+                table.placeToken(0, i % 4);
+                table.removeToken(0, (i + 2) % 4);
+            }
+        });
+        player.start();
+        while (player.isAlive())
+            table.removeAllTokens();
+        player.join();
+
+        for (int slot = 0; slot < 4; slot++)
+            assertEquals(table.hasToken(0, slot), table.playersOn(slot).get(0));
+    }
+
+    @Test
+    void placeToken_NoTokenOutlivesARemovedCard() throws Exception {
+        fillAllSlots();
+        int card = slotToCard[1];
+        CyclicBarrier round = new CyclicBarrier(2);
+        int rounds = 10_000;
+        Thread player = new Thread(() -> {
+            try {
+                for (int i = 0; i < rounds; i++) {
+                    round.await();
+                    // press a little later each round, so the press lands before, during and after the removal
+                    for (int spin = i % 500; spin > 0; spin--)
+                        Thread.onSpinWait();
+                    table.placeToken(0, 1);
+                    round.await();
+                }
+            } catch (InterruptedException | BrokenBarrierException ignored) {}
+        });
+        player.setDaemon(true);
+        player.start();
+
+        for (int i = 0; i < rounds; i++) {
+            round.await();
+            table.removeCard(1);
+            round.await();
+            assertFalse(table.hasToken(0, 1));
+            assertTrue(table.playersOn(1).isEmpty());
+            assertEquals(0, table.tokenCount(0));
+            table.placeCard(card, 1);
+        }
+        player.join();
+    }
+
+    @Test
+    void placeToken_NotOnAnEmptySlot() {
+        assertFalse(table.placeToken(0, 1));
+        assertFalse(table.hasToken(0, 1));
+        assertTrue(table.playersOn(1).isEmpty());
+    }
+
+    @Test
+    void tokens_TrackedPerPlayerAndPerSlot() {
+        fillAllSlots();
+        table.placeToken(0, 1);
+        table.placeToken(0, 3);
+        table.placeToken(1, 1);
+        table.placeToken(1, 1);
+
+        assertEquals(2, table.tokenCount(0));
+        assertEquals(1, table.tokenCount(1));
+        assertTrue(table.hasToken(1, 1));
+        assertFalse(table.hasToken(1, 3));
+        assertEquals(BitSet.valueOf(new long[]{0b11}), table.playersOn(1));
+
+        assertTrue(table.removeToken(0, 1));
+        assertFalse(table.removeToken(0, 1));
+        assertEquals(1, table.tokenCount(0));
+        assertEquals(BitSet.valueOf(new long[]{0b10}), table.playersOn(1));
+
+        table.removeAllTokens();
+        assertEquals(0, table.tokenCount(0));
+        assertEquals(0, table.tokenCount(1));
+        assertTrue(table.playersOn(1).isEmpty());
+    }
+
+    @Test
+    void currentSets_FollowsPlacementsAndRemovals() {
+        Properties properties = new Properties();
+        properties.put("Rows", "3");
+        properties.put("Columns", "4");
+        properties.put("TableDelaySeconds", "0");
+        MockLogger logger = new MockLogger();
+        Config config = new Config(logger, properties);
+        UtilImpl util = new UtilImpl(config);
+        table = new Table(new Env(logger, config, new MockUserInterface(), util));
+
+        Random random = new Random(1);
+        List<Integer> cards = new ArrayList<>();
+        for (int i = 0; i < 500; ++i) {
+            int slot = random.nextInt(config.tableSize);
+            if (random.nextBoolean()) {
+                table.removeCard(slot);
+            } else {
+                int card;
+                do card = random.nextInt(config.deckSize); while (table.cardToSlot[card] != Table.EMPTY);
+                table.placeCard(card, slot);
+            }
+
+            cards.clear();
+            for (int card : table.slotToCard)
+                if (card != Table.EMPTY) cards.add(card);
+            Set<String> expected = util.findSets(cards, Integer.MAX_VALUE).stream()
+                    .map(Arrays::toString).collect(Collectors.toSet());
+            Set<String> actual = table.currentSets().stream()
+                    .map(Arrays::toString).collect(Collectors.toSet());
+            assertEquals(expected, actual);
+            assertEquals(!expected.isEmpty(), table.hasSet());
+        }
+    }
+
     static class MockUserInterface implements UserInterface {
         @Override
         public void placeCard(int card, int slot) {}
@@ -136,6 +292,26 @@ class TableTest {
             return false;
         }
 
+        @Override
+        public int completeSet(int first, int second) {
+            return -1;
+        }
+
+        @Override
+        public int setsCount() {
+            return -1;
+        }
+
+        @Override
+        public int[] setCards(int set) {
+            return null;
+        }
+
+        @Override
+        public int[] setsOf(int card) {
+            return null;
+        }
+
         @Override
         public List<int[]> findSets(List<Integer> deck, int count) {
             return null;